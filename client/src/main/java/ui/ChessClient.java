@@ -2,6 +2,8 @@ package ui;
 
 import chess.*;
 import model.GameData;
+import model.GameFilter;
+import model.GameSummary;
 import websocket.messages.LoadGame;
 import websocket.messages.Error;
 import websocket.messages.Notification;
@@ -161,18 +163,18 @@ public class ChessClient implements ServerMessageObserver {
                 }
             }
             case "list" -> {
-                // List all active games
+                // List one page of games, starting after the given game ID if there is one
                 try {
-                    Collection<GameData> games = serverFacade.listGames(serverFacade.getAuthToken()).games();
+                    Integer after = parts.length > 1 ? Integer.valueOf(parts[1]) : null;
+                    var page = serverFacade.listGames(serverFacade.getAuthToken(), after, null, GameFilter.ALL);
+                    Collection<GameSummary> games = page.games();
                     if (games.isEmpty()) {
                         System.out.println(SET_TEXT_COLOR_RED + "No games available.");
                     } else {
                         System.out.println(SET_TEXT_COLOR_GREEN + "Available games:" + RESET_ALL);
-                        int count = 0;
-                        for (GameData game : games) {
-                            count++;
-                            // Display game information
-                            System.out.println(SET_TEXT_COLOR_MAGENTA + "Game " + SET_TEXT_COLOR_YELLOW + count + SET_TEXT_COLOR_MAGENTA + ": " + RESET_ALL);
+                        for (GameSummary game : games) {
+                            // Display game information, numbered by ID since pages don't start from the first game
+                            System.out.println(SET_TEXT_COLOR_MAGENTA + "Game " + SET_TEXT_COLOR_YELLOW + game.gameID() + SET_TEXT_COLOR_MAGENTA + ": " + RESET_ALL);
                             System.out.println(SET_TEXT_COLOR_BLACK + "  Game Name: " + SET_TEXT_COLOR_BLUE + game.gameName());
                             System.out.println(SET_TEXT_COLOR_BLACK + "  White Player: " + SET_TEXT_COLOR_BLUE +
                                     (game.whiteUsername() != null ? game.whiteUsername() : SET_TEXT_COLOR_LIGHT_GREY + "none"));
@@ -180,6 +182,11 @@ public class ChessClient implements ServerMessageObserver {
                                     (game.blackUsername() != null ? game.blackUsername() : SET_TEXT_COLOR_LIGHT_GREY + "none"));
                         }
                     }
+                    if (page.nextAfter() != null) {
+                        System.out.println(SET_TEXT_COLOR_GREEN + "More games: " + SET_TEXT_COLOR_BLUE + "list " + page.nextAfter());
+                    }
+                } catch (NumberFormatException e) {
+                    System.out.println(SET_TEXT_COLOR_RED + "Invalid command. Usage: " + SET_TEXT_COLOR_BLUE + "list [after gameID]");
                 } catch (ResponseException e) {
                     System.out.println(SET_TEXT_COLOR_RED + "Failed to retrieve games.");
                 }
@@ -205,8 +212,10 @@ public class ChessClient implements ServerMessageObserver {
                     Integer gameID = Integer.parseInt(parts[1]);
                     serverFacade.observeGame(serverFacade.getAuthToken(), gameID);
                     System.out.println(SET_TEXT_COLOR_GREEN + "Observing game " + SET_TEXT_COLOR_YELLOW + gameID);
-                    Collection<GameData> games = serverFacade.listGames(serverFacade.getAuthToken()).games();
-                    GameData gameData = games.stream()
+                    // The page of one game starting after the previous ID holds the game, if it exists
+                    Collection<GameSummary> games = serverFacade.listGames(serverFacade.getAuthToken(), gameID - 1, 1,
+                            GameFilter.ALL).games();
+                    GameSummary gameData = games.stream()
                             .filter(g -> g.gameID().equals(gameID))
                             .findFirst()
                             .orElse(null);
@@ -271,9 +280,9 @@ public class ChessClient implements ServerMessageObserver {
                     if (pieceType == ChessPiece.PieceType.PAWN && targetPos.getRow() == 1 || targetPos.getRow() == 8) {
                         // Pawn promotion
                         ChessPiece.PieceType promotionType = ChessPiece.PieceType.valueOf(parts[3]);
-                        move = new ChessMove(currPos, targetPos, promotionType);
+                        move = ChessMove.of(currPos, targetPos, promotionType);
                     } else {
-                        move = new ChessMove(currPos, targetPos, null);
+                        move = ChessMove.of(currPos, targetPos, null);
                     }
                     // Make move
                     serverFacade.makeMove(serverFacade.getCurrGameData().gameID(), move);
@@ -328,7 +337,7 @@ public class ChessClient implements ServerMessageObserver {
                     SET_TEXT_COLOR_BLUE + "   help " + SET_TEXT_COLOR_MAGENTA + "- list possible commands\n" + RESET_ALL;
     static final String postLoginHelp =
             SET_TEXT_COLOR_BLUE + "   create <NAME> " + SET_TEXT_COLOR_MAGENTA + "- a game\n" +
-                    SET_TEXT_COLOR_BLUE + "   list " + SET_TEXT_COLOR_MAGENTA + "- all games\n" +
+                    SET_TEXT_COLOR_BLUE + "   list [after gameID] " + SET_TEXT_COLOR_MAGENTA + "- a page of games\n" +
                     SET_TEXT_COLOR_BLUE + "   join <gameID> [WHITE|BLACK] " + SET_TEXT_COLOR_MAGENTA + "- to join a game\n" +
                     SET_TEXT_COLOR_BLUE + "   observe <gameID> " + SET_TEXT_COLOR_MAGENTA + "- a game\n" +
                     SET_TEXT_COLOR_BLUE + "   logout " + SET_TEXT_COLOR_MAGENTA + "- when you are done playing chess\n" +
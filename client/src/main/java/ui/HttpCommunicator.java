@@ -1,6 +1,8 @@
 package ui;
 
+import chess.ChessJsonAdapters;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -13,6 +15,7 @@ import java.net.URISyntaxException;
 public class HttpCommunicator {
     private final Integer port;
     private final String host;
+    private final Gson gson = ChessJsonAdapters.register(new GsonBuilder()).create();
     
     public HttpCommunicator(String host, Integer port) {
         this.host = host;
@@ -33,14 +36,14 @@ public class HttpCommunicator {
             http.setRequestProperty("Authorization", authToken);
         }
         
-        String jsonRequestBody = new Gson().toJson(requestBody);
+        String jsonRequestBody = gson.toJson(requestBody);
         try (OutputStream outputStream = http.getOutputStream()) {
             outputStream.write(jsonRequestBody.getBytes());
         }
         
         try (InputStream respBodyBytes = http.getInputStream()) {
             InputStreamReader inputStreamReader = new InputStreamReader(respBodyBytes);
-            return new Gson().fromJson(inputStreamReader, responseType);
+            return gson.fromJson(inputStreamReader, responseType);
         }
     }
     
@@ -53,7 +56,7 @@ public class HttpCommunicator {
         
         try (InputStream respBodyBytes = http.getInputStream()) {
             InputStreamReader inputStreamReader = new InputStreamReader(respBodyBytes);
-            return new Gson().fromJson(inputStreamReader, responseType);
+            return gson.fromJson(inputStreamReader, responseType);
         }
     }
     
@@ -65,7 +68,7 @@ public class HttpCommunicator {
         http.setRequestProperty("Content-Type", "application/json");
         http.setRequestProperty("Authorization", authToken);
         
-        String jsonRequestBody = new Gson().toJson(requestBody);
+        String jsonRequestBody = gson.toJson(requestBody);
         try (OutputStream outputStream = http.getOutputStream()) {
             outputStream.write(jsonRequestBody.getBytes());
         }
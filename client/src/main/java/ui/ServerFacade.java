@@ -4,18 +4,22 @@ import chess.ChessGame;
 import chess.ChessMove;
 import model.AuthData;
 import model.GameData;
+import model.GameFilter;
 import model.request.JoinGameRequest;
 import model.request.LoginRequest;
 import model.request.RegisterRequest;
 import model.response.CreateGameResponse;
-import model.response.ListGamesResponse;
+import model.response.ListGameSummariesResponse;
 import model.response.LoginResponse;
 import model.response.RegisterResponse;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.StringJoiner;
 
 
 public class ServerFacade {
@@ -116,9 +120,27 @@ public class ServerFacade {
         }
     }
     
-    public ListGamesResponse listGames(String authToken) throws ResponseException {
+    public ListGameSummariesResponse listGames(String authToken) throws ResponseException {
+        return listGames(authToken, null, null, GameFilter.ALL);
+    }
+    
+    /**
+     * Lists one page of games
+     *
+     * @param after  list games with IDs after this one (a previous page's nextAfter), or null for the first page
+     * @param limit  most games to list, or null for the server's default
+     * @param filter which games to include
+     */
+    public ListGameSummariesResponse listGames(String authToken, Integer after, Integer limit, GameFilter filter)
+            throws ResponseException {
+        var query = new StringJoiner("&", "?", "").setEmptyValue("");
+        if (after != null) query.add("after=" + after);
+        if (limit != null) query.add("limit=" + limit);
+        if (filter.openSeats()) query.add("openSeats=true");
+        if (filter.player() != null) query.add("player=" + URLEncoder.encode(filter.player(), StandardCharsets.UTF_8));
+        if (filter.status() != null) query.add("status=" + filter.status().name().toLowerCase());
         try {
-            return httpCommunicator.sendGetRequest("/game", authToken, ListGamesResponse.class);
+            return httpCommunicator.sendGetRequest("/game" + query, authToken, ListGameSummariesResponse.class);
         } catch (IOException | URISyntaxException e) {
             throw new ResponseException("Failed to list games. Error: " + e.getMessage());
         }
@@ -62,7 +62,7 @@ public class UIUtility {
             boardDisplay.append(" ").append(row).append(" ").append(RESET_ALL).append(SET_TEXT_COLOR_BLACK);
             
             for (int col = colStart; col != colEnd + colDirection; col += colDirection) {
-                ChessPosition currentPosition = new ChessPosition(row, col);
+                ChessPosition currentPosition = ChessPosition.of(row, col);
                 
                 // Check if the square should be highlighted
                 boolean isHighlighted = false;
@@ -104,7 +104,7 @@ public class UIUtility {
             throw new IllegalArgumentException("Invalid chess position (Out of Bounds): " + position);
         }
         
-        return new ChessPosition(row, col);
+        return ChessPosition.of(row, col);
     }
     
     private static String getString(ChessPiece piece) {
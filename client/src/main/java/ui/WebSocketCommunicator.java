@@ -1,6 +1,7 @@
 package ui;
 
 import chess.ChessGame;
+import chess.ChessJsonAdapters;
 import chess.ChessMove;
 import com.google.gson.*;
 import websocket.messages.LoadGame;
@@ -16,7 +17,7 @@ import java.net.URI;
 
 public class WebSocketCommunicator extends Endpoint {
     
-    private final Gson gson = new GsonBuilder()
+    private final Gson gson = ChessJsonAdapters.register(new GsonBuilder())
             .registerTypeAdapter(ServerMessage.class, new ServerMessageDeserializer())
             .create();
     private final Session session;
@@ -5,6 +5,8 @@ import dataaccess.inmemorydb.MemoryAuthDAO;
 import dataaccess.inmemorydb.MemoryGameDAO;
 import dataaccess.inmemorydb.MemoryUserDAO;
 import model.GameData;
+import model.GameFilter;
+import model.GameSummary;
 import model.UserData;
 import model.response.CreateGameResponse;
 import org.junit.jupiter.api.AfterAll;
@@ -105,7 +107,7 @@ public class ServerFacadeTests {
         String testAuth = authDAO.createAuth("player1").authToken();
         
         // List games with no games successful
-        Collection<GameData> games = assertDoesNotThrow(() -> facade.listGames(testAuth).games());
+        Collection<GameSummary> games = assertDoesNotThrow(() -> facade.listGames(testAuth).games());
         assertTrue(games.isEmpty());
         
         // List games with games successful
@@ -119,6 +121,27 @@ public class ServerFacadeTests {
         assertEquals(3, games.size());
     }
     
+    @Test
+    void listGamesPaged() throws Exception {
+        String testAuth = authDAO.createAuth("player1").authToken();
+        facade.createGame(testAuth, "game1");
+        int secondID = facade.createGame(testAuth, "game2").gameID();
+        facade.joinGame(testAuth, ChessGame.TeamColor.WHITE, secondID);
+        
+        // one game per page
+        var firstPage = facade.listGames(testAuth, null, 1, GameFilter.ALL);
+        assertEquals(1, firstPage.games().size());
+        assertNotNull(firstPage.nextAfter());
+        var secondPage = facade.listGames(testAuth, firstPage.nextAfter(), 1, GameFilter.ALL);
+        assertEquals(secondID, secondPage.games().iterator().next().gameID());
+        assertNull(secondPage.nextAfter());
+        
+        // only games player1 plays in
+        var playerGames = facade.listGames(testAuth, null, null, new GameFilter(false, "player1", null));
+        assertEquals(1, playerGames.games().size());
+        assertEquals(secondID, playerGames.games().iterator().next().gameID());
+    }
+    
     @Test
     void listGamesFail() {
         // List games without auth throws exception
@@ -0,0 +1,329 @@
+package dataaccess;
+
+import exception.DataAccessException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of database connections. Closing a connection handed out by the pool returns it
+ * to the pool instead of closing it, so DAOs keep using try-with-resources as before.
+ * <p>
+ * Connections are checked with {@link Connection#isValid} before reuse if they sat idle for a while,
+ * and retired once they reach their maximum lifetime. A connection held longer than the leak
+ * detection threshold is reported along with the stack trace of the code that took it.
+ * <p>
+ * The pool is also what limits how much work reaches the database at once: at most {@code maxSize}
+ * callers hold a connection, and once {@code maxWaiting} more are queued behind them further callers
+ * are turned away at once instead of piling up until they time out.
+ */
+public class ConnectionPool implements AutoCloseable {
+    
+    /**
+     * Opens a new physical connection to the database
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+    
+    /**
+     * Pool settings
+     *
+     * @param maxSize                  most connections open at once
+     * @param acquireTimeoutMillis     how long to wait for a free connection before failing
+     * @param maxLifetimeMillis        age at which a connection is closed instead of reused (0 for no limit)
+     * @param validateAfterIdleMillis  idle time after which a connection is validated before reuse
+     * @param validationTimeoutSeconds how long validating a connection may take
+     * @param leakDetectionMillis      time a connection may be held before it is reported as a leak (0 for off)
+     * @param maxWaiting               callers that may wait for a connection before more are refused (0 for no limit)
+     */
+    public record Config(int maxSize, long acquireTimeoutMillis, long maxLifetimeMillis, long validateAfterIdleMillis,
+                         int validationTimeoutSeconds, long leakDetectionMillis, int maxWaiting) {
+        
+        public Config {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("Pool size must be at least 1");
+            }
+        }
+        
+        /**
+         * Reads settings from db.pool.* properties, using the default for any that are missing
+         */
+        public static Config fromProperties(Properties props) {
+            return new Config(
+                    Integer.parseInt(props.getProperty("db.pool.maxSize", "10")),
+                    Long.parseLong(props.getProperty("db.pool.acquireTimeoutMillis", "5000")),
+                    Long.parseLong(props.getProperty("db.pool.maxLifetimeMillis", "1800000")),
+                    Long.parseLong(props.getProperty("db.pool.validateAfterIdleMillis", "5000")),
+                    Integer.parseInt(props.getProperty("db.pool.validationTimeoutSeconds", "2")),
+                    Long.parseLong(props.getProperty("db.pool.leakDetectionMillis", "60000")),
+                    Integer.parseInt(props.getProperty("db.pool.maxWaiting", "0"))
+            );
+        }
+    }
+    
+    /**
+     * A snapshot of the pool's counters
+     *
+     * @param open              connections currently open, in use or idle
+     * @param idle              open connections waiting in the pool
+     * @param active            connections currently handed out
+     * @param waiting           callers waiting for a connection
+     * @param created           connections opened since the pool started
+     * @param closed            connections closed since the pool started (expired, invalid or broken)
+     * @param acquired          connections handed out since the pool started
+     * @param timeouts          requests that gave up waiting for a connection
+     * @param rejected          requests refused because too many were already waiting
+     * @param leaks             connections reported as held past the leak threshold
+     * @param averageWaitMicros average time spent getting a connection
+     */
+    public record Stats(int open, int idle, int active, int waiting, long created, long closed, long acquired,
+                        long timeouts, long rejected, long leaks, long averageWaitMicros) {
+    }
+    
+    // Physical connection and its timestamps
+    private static class PooledConnection {
+        final Connection connection;
+        final long createdAt;
+        long lastReturnedAt;
+        
+        PooledConnection(Connection connection, long now) {
+            this.connection = connection;
+            this.createdAt = now;
+            this.lastReturnedAt = now;
+        }
+    }
+    
+    private static final ScheduledThreadPoolExecutor LEAK_DETECTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+        var thread = new Thread(runnable, "connection-leak-detector");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    static {
+        LEAK_DETECTOR.setRemoveOnCancelPolicy(true);
+    }
+    
+    private final ConnectionFactory factory;
+    private final Config config;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private volatile boolean closed = false;
+    
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong closedCount = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    
+    public ConnectionPool(ConnectionFactory factory, Config config) {
+        this.factory = factory;
+        this.config = config;
+        this.permits = new Semaphore(config.maxSize(), true);
+    }
+    
+    /**
+     * Takes a connection from the pool, opening one if none are idle. Close it to give it back.
+     *
+     * @throws DataAccessException if too many callers are already waiting, no connection frees up within the
+     *                             acquire timeout, or one can't be opened
+     */
+    public Connection getConnection() throws DataAccessException {
+        if (closed) {
+            throw new DataAccessException("Connection pool is closed");
+        }
+        // the queue length is an estimate, which is close enough for shedding load
+        if (config.maxWaiting() > 0 && permits.availablePermits() == 0
+                && permits.getQueueLength() >= config.maxWaiting()) {
+            rejected.incrementAndGet();
+            throw new DataAccessException("Too many requests waiting for a database connection");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.acquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new DataAccessException("Timed out after " + config.acquireTimeoutMillis()
+                        + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted while waiting for a database connection");
+        }
+        
+        try {
+            var pooled = takeUsableConnection();
+            acquired.incrementAndGet();
+            waitNanos.addAndGet(System.nanoTime() - start);
+            return lend(pooled);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw new DataAccessException(e.getMessage());
+        }
+    }
+    
+    public Stats getStats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        int active = config.maxSize() - permits.availablePermits();
+        long acquiredCount = acquired.get();
+        return new Stats(idleCount + active, idleCount, active, permits.getQueueLength(), created.get(),
+                closedCount.get(), acquiredCount, timeouts.get(), rejected.get(), leaks.get(),
+                acquiredCount == 0 ? 0 : waitNanos.get() / acquiredCount / 1000);
+    }
+    
+    /**
+     * Closes the idle connections and stops handing out new ones. Connections in use are closed when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (idle) {
+            idle.forEach(this::retire);
+            idle.clear();
+        }
+    }
+    
+    // Reuse the most recently returned connection that is still good, or open a new one
+    private PooledConnection takeUsableConnection() throws SQLException {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                var connection = factory.create();
+                created.incrementAndGet();
+                return new PooledConnection(connection, System.currentTimeMillis());
+            }
+            if (isUsable(pooled, System.currentTimeMillis())) {
+                return pooled;
+            }
+            retire(pooled);
+        }
+    }
+    
+    private boolean isUsable(PooledConnection pooled, long now) {
+        if (isExpired(pooled, now)) return false;
+        if (now - pooled.lastReturnedAt < config.validateAfterIdleMillis()) return true;
+        try {
+            return pooled.connection.isValid(config.validationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    private boolean isExpired(PooledConnection pooled, long now) {
+        return config.maxLifetimeMillis() > 0 && now - pooled.createdAt >= config.maxLifetimeMillis();
+    }
+    
+    // Wrap the connection so that closing it gives it back, and watch for it being held too long
+    private Connection lend(PooledConnection pooled) {
+        var handler = new LentConnection(pooled);
+        if (config.leakDetectionMillis() > 0) {
+            var takenAt = new Throwable("Connection taken here");
+            handler.leakCheck = LEAK_DETECTOR.schedule(() -> {
+                leaks.incrementAndGet();
+                System.out.println("Possible connection leak: connection held for over "
+                        + config.leakDetectionMillis() + " ms");
+                takenAt.printStackTrace(System.out);
+            }, config.leakDetectionMillis(), TimeUnit.MILLISECONDS);
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+    
+    private void giveBack(PooledConnection pooled) {
+        try {
+            boolean keep = !closed && !pooled.connection.isClosed() && !isExpired(pooled, System.currentTimeMillis());
+            if (keep && !pooled.connection.getAutoCommit()) {
+                // don't pass an unfinished transaction on to the next user
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            if (keep) {
+                pooled.lastReturnedAt = System.currentTimeMillis();
+                synchronized (idle) {
+                    idle.addFirst(pooled);
+                }
+            } else {
+                retire(pooled);
+            }
+        } catch (SQLException e) {
+            retire(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+    
+    private void retire(PooledConnection pooled) {
+        closedCount.incrementAndGet();
+        try {
+            pooled.connection.close();
+        } catch (SQLException ignored) {
+            // already broken, nothing more to do
+        }
+    }
+    
+    // Handles calls on a lent connection: close() returns it to the pool, anything else goes to the real connection
+    private class LentConnection implements InvocationHandler {
+        private final PooledConnection pooled;
+        private ScheduledFuture<?> leakCheck;
+        private boolean returned = false;
+        
+        LentConnection(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    synchronized (this) {
+                        if (returned) return null;
+                        returned = true;
+                    }
+                    if (leakCheck != null) leakCheck.cancel(false);
+                    giveBack(pooled);
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || pooled.connection.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled " + pooled.connection;
+                }
+            }
+            if (returned) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
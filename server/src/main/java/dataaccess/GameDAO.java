@@ -1,9 +1,12 @@
 package dataaccess;
 
+import chess.ChessMove;
 import exception.DataAccessException;
 import model.GameData;
+import model.GameFilter;
+import model.GameSummary;
 
-import java.util.Collection;
+import java.util.List;
 
 public interface GameDAO {
     
@@ -13,11 +16,17 @@ public interface GameDAO {
     // Get a game by its ID
     GameData getGame(Integer gameID) throws DataAccessException;
     
-    // Method to update an existing game's data
+    // Method to update an existing game's data. Throws ConflictException if the game
+    // was updated since it was read, i.e. its version no longer matches.
     void updateGame(GameData game) throws DataAccessException;
     
-    // List all games
-    Collection<GameData> listGames() throws DataAccessException;
+    // Record a move made in an existing game; the game data already includes the move.
+    // Throws ConflictException like updateGame.
+    void addMove(GameData game, ChessMove move) throws DataAccessException;
+    
+    // List the ID, players, name and status of up to limit games that match the filter and have
+    // IDs greater than after (or any ID if after is null), in ID order, without loading the boards
+    List<GameSummary> listGameSummaries(GameFilter filter, Integer after, int limit) throws DataAccessException;
     
     // Clear database data related to games
     void clear() throws DataAccessException;
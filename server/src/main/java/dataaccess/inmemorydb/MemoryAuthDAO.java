@@ -5,11 +5,11 @@ import exception.BadRequestException;
 import exception.DataAccessException;
 import model.AuthData;
 
-import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MemoryAuthDAO implements AuthDAO {
-    private final HashMap<String, AuthData> authorization = new HashMap<>();
+    private final ConcurrentHashMap<String, AuthData> authorization = new ConcurrentHashMap<>();
     
     private static MemoryAuthDAO instance = null;
     
@@ -18,7 +18,7 @@ public class MemoryAuthDAO implements AuthDAO {
     }
     
     // Public method to get the singleton instance
-    public static MemoryAuthDAO getInstance() {
+    public static synchronized MemoryAuthDAO getInstance() {
         if (instance == null) {
             instance = new MemoryAuthDAO();
         }
@@ -32,10 +32,9 @@ public class MemoryAuthDAO implements AuthDAO {
         }
         String authToken = UUID.randomUUID().toString();
         AuthData auth = new AuthData(authToken, username);
-        if (authorization.containsKey(authToken)) {
+        if (authorization.putIfAbsent(authToken, auth) != null) {
             throw new DataAccessException("AuthToken already exists.");
         }
-        authorization.put(authToken, auth);
         return auth;
     }
     
@@ -1,16 +1,21 @@
 package dataaccess.inmemorydb;
 
 import chess.ChessGame;
+import chess.ChessMove;
 import dataaccess.GameDAO;
 import exception.BadRequestException;
+import exception.ConflictException;
 import exception.DataAccessException;
 import model.GameData;
+import model.GameFilter;
+import model.GameSummary;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
 
 public class MemoryGameDAO implements GameDAO {
-    private final HashMap<Integer, GameData> games = new HashMap<>();
+    private final TreeMap<Integer, GameData> games = new TreeMap<>(); // ordered by ID for paging
     private int gameIDCounter = 0; // Counter for auto-incrementing game IDs
     
     private static MemoryGameDAO instance = null;
@@ -20,7 +25,7 @@ public class MemoryGameDAO implements GameDAO {
     }
     
     // Public method to get the singleton instance
-    public static MemoryGameDAO getInstance() {
+    public static synchronized MemoryGameDAO getInstance() {
         if (instance == null) {
             instance = new MemoryGameDAO();
         }
@@ -28,7 +33,7 @@ public class MemoryGameDAO implements GameDAO {
     }
     
     @Override
-    public Integer createGame(String gameName) throws BadRequestException {
+    public synchronized Integer createGame(String gameName) throws BadRequestException {
         if (gameName == null) {
             throw new BadRequestException("game name cannot be null.");
         }
@@ -40,32 +45,59 @@ public class MemoryGameDAO implements GameDAO {
     }
     
     @Override
-    public GameData getGame(Integer gameID) throws BadRequestException {
+    public synchronized GameData getGame(Integer gameID) throws BadRequestException {
         if (gameID == null) {
             throw new BadRequestException("gameID cannot be null.");
         }
-        return games.get(gameID);
+        return copyOf(games.get(gameID));
     }
     
     @Override
-    public void updateGame(GameData game) throws DataAccessException {
+    public synchronized void updateGame(GameData game) throws DataAccessException {
         if (game == null) {
             throw new BadRequestException("game data cannot be null.");
         }
-        if (games.containsKey(game.gameID())) {
-            games.put(game.gameID(), game); // overwrite the old game data with the new game
-        } else {
+        GameData storedGame = games.get(game.gameID());
+        if (storedGame == null) {
             throw new BadRequestException("Game with ID " + game.gameID() + " does not exist.");
         }
+        if (storedGame.version() != game.version()) {
+            throw new ConflictException("Game with ID " + game.gameID() + " was changed by another request.");
+        }
+        // overwrite the old game data with the new game
+        games.put(game.gameID(), new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(),
+                game.gameName(), new ChessGame(game.game()), game.version() + 1));
     }
     
     @Override
-    public Collection<GameData> listGames() {
-        return games.values();
+    public void addMove(GameData game, ChessMove move) throws DataAccessException {
+        updateGame(game); // games are kept whole in memory, so there is no separate move log
     }
     
     @Override
-    public void clear() {
+    public synchronized List<GameSummary> listGameSummaries(GameFilter filter, Integer after, int limit) {
+        var summaries = new ArrayList<GameSummary>();
+        var gamesAfter = after == null ? games.values() : games.tailMap(after, false).values();
+        for (GameData game : gamesAfter) {
+            if (summaries.size() == limit) break;
+            var summary = new GameSummary(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(),
+                    game.game().getWinner() != null);
+            if (filter.matches(summary)) {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
+    
+    @Override
+    public synchronized void clear() {
         games.clear();
     }
+    
+    // Callers change the games they get, so hand out copies to keep the stored games unchanged until updated
+    private static GameData copyOf(GameData game) {
+        if (game == null) return null;
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(),
+                new ChessGame(game.game()), game.version());
+    }
 }
@@ -5,10 +5,10 @@ import exception.DataAccessException;
 import dataaccess.UserDAO;
 import model.UserData;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MemoryUserDAO implements UserDAO {
-    private final HashMap<String, UserData> users = new HashMap<>();
+    private final ConcurrentHashMap<String, UserData> users = new ConcurrentHashMap<>();
     
     private static MemoryUserDAO instance = null;
     
@@ -17,7 +17,7 @@ public class MemoryUserDAO implements UserDAO {
     }
     
     // Public method to get the singleton instance
-    public static MemoryUserDAO getInstance() {
+    public static synchronized MemoryUserDAO getInstance() {
         if (instance == null) {
             instance = new MemoryUserDAO();
         }
@@ -29,10 +29,9 @@ public class MemoryUserDAO implements UserDAO {
         if (user == null) {
             throw new BadRequestException("User data cannot be null.");
         }
-        if (users.containsKey(user.username())) {
+        if (users.putIfAbsent(user.username(), user) != null) {
             throw new BadRequestException("User already exists.");
         }
-        users.put(user.username(), user);
     }
     
     @Override
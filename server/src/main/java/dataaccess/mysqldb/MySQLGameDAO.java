@@ -1,26 +1,48 @@
 package dataaccess.mysqldb;
 
 import chess.ChessGame;
+import chess.ChessJsonAdapters;
+import chess.ChessMove;
+import chess.GameCodec;
+import chess.InvalidMoveException;
+import chess.PackedMove;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import dataaccess.DatabaseManager;
 import dataaccess.GameDAO;
 import exception.BadRequestException;
+import exception.ConflictException;
 import exception.DataAccessException;
 import model.GameData;
+import model.GameFilter;
+import model.GameSummary;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
 
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
 
+/**
+ * Games are stored as a Game row plus an append-only GameMove log. The Game row's game_data holds the game as of
+ * snapshot_move moves; each move after that is one small GameMove row, and every SNAPSHOT_INTERVAL moves the
+ * row also holds a snapshot of the game after the move, so rebuilding a game never replays more than that many moves.
+ * <p>
+ * Every write bumps the Game row's version and only succeeds if the version still matches the one that was read.
+ */
 public class MySQLGameDAO implements GameDAO {
     
+    // Moves between snapshots in the move log
+    private static final int SNAPSHOT_INTERVAL = 20;
+    
+    // Only needed to read rows saved as JSON before games were stored with GameCodec
     private final Gson gson;
     
     public MySQLGameDAO() {
-        gson = new Gson();
+        gson = ChessJsonAdapters.register(new GsonBuilder()).create();
         try {
             DatabaseManager.createDatabase();
             try (var conn = DatabaseManager.getConnection()) {
@@ -30,11 +52,40 @@ public class MySQLGameDAO implements GameDAO {
                             white_username VARCHAR(64),
                             black_username VARCHAR(64),
                             game_name VARCHAR(64),
-                            game_data BLOB
+                            game_data BLOB,
+                            snapshot_move INT NOT NULL DEFAULT 0,
+                            version INT NOT NULL DEFAULT 0,
+                            finished BOOLEAN NOT NULL DEFAULT FALSE,
+                            INDEX white_username_index (white_username),
+                            INDEX black_username_index (black_username),
+                            INDEX finished_index (finished)
+                        )""";
+                try (var preparedStatement = conn.prepareStatement(statement)) {
+                    preparedStatement.executeUpdate();
+                }
+                addColumnIfMissing(conn, "Game", "snapshot_move", "INT NOT NULL DEFAULT 0");
+                addColumnIfMissing(conn, "Game", "version", "INT NOT NULL DEFAULT 0");
+                boolean addedFinished = addColumnIfMissing(conn, "Game", "finished", "BOOLEAN NOT NULL DEFAULT FALSE");
+                addIndexIfMissing(conn, "Game", "white_username_index", "white_username");
+                addIndexIfMissing(conn, "Game", "black_username_index", "black_username");
+                addIndexIfMissing(conn, "Game", "finished_index", "finished");
+                
+                statement = """
+                        CREATE TABLE IF NOT EXISTS GameMove (
+                            game_id INT NOT NULL,
+                            move_number INT NOT NULL,
+                            move SMALLINT NOT NULL,
+                            snapshot BLOB,
+                            PRIMARY KEY (game_id, move_number)
                         )""";
                 try (var preparedStatement = conn.prepareStatement(statement)) {
                     preparedStatement.executeUpdate();
                 }
+                
+                // Games saved before the finished column existed all start out unfinished
+                if (addedFinished) {
+                    backfillFinished(conn);
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -50,7 +101,7 @@ public class MySQLGameDAO implements GameDAO {
             var statement = "INSERT INTO Game (game_name, game_data) VALUES (?, ?)";
             try (var preparedStatement = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
                 preparedStatement.setString(1, gameName);
-                preparedStatement.setString(2, gson.toJson(new ChessGame()));
+                preparedStatement.setBytes(2, GameCodec.encode(new ChessGame()));
                 preparedStatement.executeUpdate();
                 var resultSet = preparedStatement.getGeneratedKeys();
                 if (resultSet.next()) {
@@ -75,13 +126,7 @@ public class MySQLGameDAO implements GameDAO {
                 preparedStatement.setInt(1, gameID);
                 var resultSet = preparedStatement.executeQuery();
                 if (resultSet.next()) {
-                    return new GameData(
-                            resultSet.getInt("game_id"),
-                            resultSet.getString("white_username"),
-                            resultSet.getString("black_username"),
-                            resultSet.getString("game_name"),
-                            gson.fromJson(resultSet.getString("game_data"), ChessGame.class)
-                    );
+                    return readGameData(conn, resultSet);
                 }
                 return null;
             }
@@ -95,34 +140,31 @@ public class MySQLGameDAO implements GameDAO {
         if (game == null) {
             throw new BadRequestException("game cannot be null.");
         }
-        
-        
         try (var conn = DatabaseManager.getConnection()) {
-            // Check if game exists
-            var statement = "SELECT COUNT(*) FROM Game WHERE game_id = ?";
-            try (var preparedStatement = conn.prepareStatement(statement)) {
-                preparedStatement.setInt(1, game.gameID());
-                ResultSet resultSet = preparedStatement.executeQuery();
-                if (resultSet.next() && resultSet.getInt(1) == 0) { // If game does not exist
-                    throw new BadRequestException("Game with ID " + game.gameID() + " does not exist.");
-                }
-            }
-            // Update game
-            statement = """
+            // Update game, only if no one else has updated it since it was read
+            var statement = """
                     UPDATE Game SET
                         white_username = ?,
                         black_username = ?,
                         game_name = ?,
-                        game_data = ?
-                        WHERE game_id = ?
+                        game_data = ?,
+                        snapshot_move = (SELECT COALESCE(MAX(move_number), 0) FROM GameMove WHERE game_id = ?),
+                        finished = ?,
+                        version = version + 1
+                        WHERE game_id = ? AND version = ?
                     """;
             try (var preparedStatement = conn.prepareStatement(statement)) {
                 preparedStatement.setString(1, game.whiteUsername());
                 preparedStatement.setString(2, game.blackUsername());
                 preparedStatement.setString(3, game.gameName());
-                preparedStatement.setString(4, gson.toJson(game.game()));
+                preparedStatement.setBytes(4, GameCodec.encode(game.game()));
                 preparedStatement.setInt(5, game.gameID());
-                preparedStatement.executeUpdate();
+                preparedStatement.setBoolean(6, game.game().getWinner() != null);
+                preparedStatement.setInt(7, game.gameID());
+                preparedStatement.setInt(8, game.version());
+                if (preparedStatement.executeUpdate() == 0) {
+                    throw updateFailure(conn, game.gameID());
+                }
             }
         } catch (SQLException e) {
             throw new DataAccessException(e.getMessage());
@@ -130,22 +172,93 @@ public class MySQLGameDAO implements GameDAO {
     }
     
     @Override
-    public Collection<GameData> listGames() throws DataAccessException {
-        ArrayList<GameData> games = new ArrayList<>();
+    public void addMove(GameData game, ChessMove move) throws DataAccessException {
+        if (game == null || move == null) {
+            throw new BadRequestException("game and move cannot be null.");
+        }
         try (var conn = DatabaseManager.getConnection()) {
-            var statement = "SELECT * FROM Game";
-            try (var preparedStatement = conn.prepareStatement(statement)) {
+            // Bump the version and log the move in one transaction, so the version never moves on without the move
+            conn.setAutoCommit(false);
+            try {
+                // Claim the game's next version, so no other move can be logged from the same position
+                var statement = "UPDATE Game SET version = version + 1, finished = ? WHERE game_id = ? AND version = ?";
+                try (var preparedStatement = conn.prepareStatement(statement)) {
+                    preparedStatement.setBoolean(1, game.game().getWinner() != null);
+                    preparedStatement.setInt(2, game.gameID());
+                    preparedStatement.setInt(3, game.version());
+                    if (preparedStatement.executeUpdate() == 0) {
+                        throw updateFailure(conn, game.gameID());
+                    }
+                }
+                
+                // Append the move after the last one logged, with a snapshot of the game every SNAPSHOT_INTERVAL moves
+                statement = """
+                        INSERT INTO GameMove (game_id, move_number, move, snapshot)
+                            SELECT game_id, move_number, ?, IF(move_number % ? = 0, ?, NULL) FROM (
+                                SELECT g.game_id, COALESCE(MAX(m.move_number), g.snapshot_move) + 1 AS move_number
+                                    FROM Game g LEFT JOIN GameMove m ON m.game_id = g.game_id
+                                    WHERE g.game_id = ?
+                                    GROUP BY g.game_id
+                            ) AS next_move
+                        """;
+                try (var preparedStatement = conn.prepareStatement(statement)) {
+                    preparedStatement.setShort(1, (short) PackedMove.of(move));
+                    preparedStatement.setInt(2, SNAPSHOT_INTERVAL);
+                    preparedStatement.setBytes(3, GameCodec.encode(game.game()));
+                    preparedStatement.setInt(4, game.gameID());
+                    preparedStatement.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | DataAccessException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e.getMessage());
+        }
+    }
+    
+    @Override
+    public List<GameSummary> listGameSummaries(GameFilter filter, Integer after, int limit) throws DataAccessException {
+        // Each filter narrows the range scan along the primary key, or uses the index on its column
+        var statement = new StringBuilder("""
+                SELECT game_id, white_username, black_username, game_name, finished FROM Game
+                    WHERE game_id > ?""");
+        if (filter.openSeats()) {
+            statement.append(" AND (white_username IS NULL OR black_username IS NULL)");
+        }
+        if (filter.player() != null) {
+            statement.append(" AND (white_username = ? OR black_username = ?)");
+        }
+        if (filter.status() != null) {
+            statement.append(" AND finished = ?");
+        }
+        statement.append(" ORDER BY game_id LIMIT ?");
+        
+        ArrayList<GameSummary> summaries = new ArrayList<>();
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var preparedStatement = conn.prepareStatement(statement.toString())) {
+                int index = 1;
+                preparedStatement.setInt(index++, after == null ? Integer.MIN_VALUE : after);
+                if (filter.player() != null) {
+                    preparedStatement.setString(index++, filter.player());
+                    preparedStatement.setString(index++, filter.player());
+                }
+                if (filter.status() != null) {
+                    preparedStatement.setBoolean(index++, filter.status() == GameFilter.Status.FINISHED);
+                }
+                preparedStatement.setInt(index, limit);
                 var resultSet = preparedStatement.executeQuery();
                 while (resultSet.next()) {
-                    games.add(new GameData(
+                    summaries.add(new GameSummary(
                             resultSet.getInt("game_id"),
                             resultSet.getString("white_username"),
                             resultSet.getString("black_username"),
                             resultSet.getString("game_name"),
-                            gson.fromJson(resultSet.getString("game_data"), ChessGame.class)
+                            resultSet.getBoolean("finished")
                     ));
                 }
-                return games;
+                return summaries;
             }
         } catch (SQLException e) {
             throw new DataAccessException(e.getMessage());
@@ -155,14 +268,128 @@ public class MySQLGameDAO implements GameDAO {
     @Override
     public void clear() throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
-            var statement = "TRUNCATE TABLE Game";
-            try (var preparedStatement = conn.prepareStatement(statement)) {
-                preparedStatement.executeUpdate();
+            for (var statement : new String[]{"TRUNCATE TABLE GameMove", "TRUNCATE TABLE Game"}) {
+                try (var preparedStatement = conn.prepareStatement(statement)) {
+                    preparedStatement.executeUpdate();
+                }
             }
         } catch (SQLException e) {
             throw new DataAccessException(e.getMessage());
         }
     }
     
+    // Build a game's data from its Game row, replaying the logged moves made since the last snapshot
+    private GameData readGameData(Connection conn, ResultSet gameRow) throws SQLException, DataAccessException {
+        int gameID = gameRow.getInt("game_id");
+        ChessGame game = readGame(gameRow.getBytes("game_data"));
+        
+        // Moves after the Game row's snapshot, starting from the latest logged snapshot if there is a newer one
+        var statement = """
+                SELECT move_number, move, snapshot FROM GameMove
+                    WHERE game_id = ? AND move_number > ? AND move_number >= COALESCE(
+                        (SELECT MAX(move_number) FROM GameMove WHERE game_id = ? AND snapshot IS NOT NULL), 0)
+                    ORDER BY move_number
+                """;
+        try (var preparedStatement = conn.prepareStatement(statement)) {
+            preparedStatement.setInt(1, gameID);
+            preparedStatement.setInt(2, gameRow.getInt("snapshot_move"));
+            preparedStatement.setInt(3, gameID);
+            var resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                byte[] snapshot = resultSet.getBytes("snapshot");
+                if (snapshot != null) {
+                    game = readGame(snapshot);
+                } else {
+                    try {
+                        game.makeMove(ChessMove.of(resultSet.getShort("move")));
+                    } catch (InvalidMoveException e) {
+                        throw new DataAccessException("Logged move " + resultSet.getInt("move_number")
+                                + " of game " + gameID + " is invalid");
+                    }
+                }
+            }
+        }
+        
+        return new GameData(
+                gameID,
+                gameRow.getString("white_username"),
+                gameRow.getString("black_username"),
+                gameRow.getString("game_name"),
+                game,
+                gameRow.getInt("version")
+        );
+    }
+    
+    // Tell why an update matched no rows: either the game is missing or its version has moved on
+    private static DataAccessException updateFailure(Connection conn, int gameID) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement("SELECT 1 FROM Game WHERE game_id = ?")) {
+            preparedStatement.setInt(1, gameID);
+            if (!preparedStatement.executeQuery().next()) {
+                return new BadRequestException("Game with ID " + gameID + " does not exist.");
+            }
+        }
+        return new ConflictException("Game with ID " + gameID + " was changed by another request.");
+    }
+    
+    // Add an index to a table created before the index existed
+    private static void addIndexIfMissing(Connection conn, String table, String index, String column)
+            throws SQLException {
+        try (var indexes = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, table, false, false)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) return;
+            }
+        }
+        try (var preparedStatement = conn.prepareStatement(
+                "CREATE INDEX " + index + " ON " + table + " (" + column + ")")) {
+            preparedStatement.executeUpdate();
+        }
+    }
+    
+    // Add a column to a table created before the column existed, returning whether it was added
+    private static boolean addColumnIfMissing(Connection conn, String table, String column, String definition)
+            throws SQLException {
+        try (var columns = conn.getMetaData().getColumns(conn.getCatalog(), null, table, column)) {
+            if (columns.next()) return false;
+        }
+        try (var preparedStatement = conn.prepareStatement(
+                "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition)) {
+            preparedStatement.executeUpdate();
+        }
+        return true;
+    }
+    
+    // Mark the games that are already over as finished, decoding each game once. Runs only when the
+    // finished column has just been added, so the version is left alone.
+    private void backfillFinished(Connection conn) throws SQLException, DataAccessException {
+        var finishedIDs = new ArrayList<Integer>();
+        try (var preparedStatement = conn.prepareStatement("SELECT * FROM Game")) {
+            var resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                if (readGameData(conn, resultSet).game().getWinner() != null) {
+                    finishedIDs.add(resultSet.getInt("game_id"));
+                }
+            }
+        }
+        try (var preparedStatement = conn.prepareStatement("UPDATE Game SET finished = TRUE WHERE game_id = ?")) {
+            for (int gameID : finishedIDs) {
+                preparedStatement.setInt(1, gameID);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        }
+    }
+    
+    // Decode a game_data value, which is either binary (GameCodec) or JSON from before the binary format
+    private ChessGame readGame(byte[] data) throws DataAccessException {
+        try {
+            if (GameCodec.isEncoded(data)) {
+                return GameCodec.decode(data);
+            }
+            return gson.fromJson(new String(data, StandardCharsets.UTF_8), ChessGame.class);
+        } catch (RuntimeException e) {
+            throw new DataAccessException("Unable to read game data: " + e.getMessage());
+        }
+    }
+    
     
 }
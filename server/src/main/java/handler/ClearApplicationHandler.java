@@ -4,6 +4,7 @@ import dataaccess.AuthDAO;
 import dataaccess.GameDAO;
 import dataaccess.UserDAO;
 import exception.DataAccessException;
+import service.GameActors;
 import service.GameService;
 import service.UserService;
 import spark.Request;
@@ -13,14 +14,17 @@ import spark.Route;
 public class ClearApplicationHandler implements Route {
     private final GameService gameService;
     private final UserService userService;
+    private final GameActors gameActors;
     
-    public ClearApplicationHandler(GameDAO gameDAO, AuthDAO authDAO, UserDAO userDAO) {
+    public ClearApplicationHandler(GameDAO gameDAO, AuthDAO authDAO, UserDAO userDAO, GameActors gameActors) {
         this.gameService = new GameService(authDAO, gameDAO);
         this.userService = new UserService(authDAO, userDAO);
+        this.gameActors = gameActors;
     }
     
     @Override
     public Object handle(Request req, Response res) throws DataAccessException {
+        gameActors.clear(); // drop the games held in memory, once their pending writes are done
         userService.clearService();
         gameService.clearService();
         res.type("application/json");
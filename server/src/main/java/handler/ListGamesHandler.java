@@ -3,10 +3,12 @@ package handler;
 import com.google.gson.Gson;
 import dataaccess.AuthDAO;
 import dataaccess.GameDAO;
+import exception.BadRequestException;
 import exception.DataAccessException;
+import model.GameFilter;
 import service.GameService;
 import model.request.ListGamesRequest;
-import model.response.ListGamesResponse;
+import model.response.ListGameSummariesResponse;
 import spark.Request;
 import spark.Response;
 import spark.Route;
@@ -19,13 +21,43 @@ public class ListGamesHandler implements Route {
         this.gameService = new GameService(authDAO, gameDAO);
     }
     
+    // Query parameters (all optional): after=<gameID>, limit=<count>, openSeats=true, player=<username>,
+    // status=in_progress|finished
     @Override
     public Object handle(Request req, Response res) throws DataAccessException {
         String authToken = req.headers("authorization");
-        ListGamesRequest listGamesRequest = new ListGamesRequest(authToken);
-        ListGamesResponse listGamesResponse = gameService.listGames(listGamesRequest);
+        GameFilter filter = new GameFilter(
+                Boolean.parseBoolean(req.queryParams("openSeats")),
+                req.queryParams("player"),
+                parseStatus(req.queryParams("status"))
+        );
+        ListGamesRequest listGamesRequest = new ListGamesRequest(authToken,
+                parseInteger(req.queryParams("after"), "after"), parseInteger(req.queryParams("limit"), "limit"), filter);
+        ListGameSummariesResponse listGamesResponse = gameService.listGameSummaries(listGamesRequest);
         res.status(200);
         res.type("application/json");
         return gson.toJson(listGamesResponse);
     }
+    
+    private static Integer parseInteger(String value, String name) throws BadRequestException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException(name + " must be a number");
+        }
+    }
+    
+    private static GameFilter.Status parseStatus(String value) throws BadRequestException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return GameFilter.Status.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("status must be in_progress or finished");
+        }
+    }
 }
@@ -0,0 +1,197 @@
+package handler;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue of outgoing messages for each WebSocket session, sent with Jetty's asynchronous
+ * API one message at a time. Queueing never blocks, so a slow client only backs up its own queue
+ * instead of holding up the thread sending a move to everyone else in the game. When a queue is
+ * full the {@link OverflowPolicy} decides what gives.
+ */
+public class OutboundQueues {
+    
+    public enum OverflowPolicy {
+        /**
+         * Drop the game states still waiting to be sent except the newest, which replaces them, and
+         * disconnect the client only if that doesn't make room
+         */
+        DROP_STALE_LOAD_GAME,
+        /**
+         * Disconnect the client
+         */
+        DISCONNECT
+    }
+    
+    /**
+     * @param capacity messages each session may have waiting
+     * @param overflow what to do when a session's queue is full
+     */
+    public record Config(int capacity, OverflowPolicy overflow) {
+        
+        public Config {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Queue capacity must be at least 1");
+            }
+        }
+        
+        /**
+         * Reads the -DwsQueueCapacity and -DwsOverflowPolicy system properties, defaulting to 64 and DROP_STALE_LOAD_GAME
+         */
+        public static Config fromSystemProperties() {
+            return new Config(Integer.getInteger("wsQueueCapacity", 64),
+                    OverflowPolicy.valueOf(System.getProperty("wsOverflowPolicy", "DROP_STALE_LOAD_GAME")));
+        }
+    }
+    
+    /**
+     * A snapshot of the queues' counters
+     *
+     * @param sessions     sessions with a queue
+     * @param queued       messages waiting across all sessions, not counting those being sent
+     * @param maxDepth     messages waiting for the most backed-up session
+     * @param sent         messages sent since the server started
+     * @param dropped      stale game states dropped to make room
+     * @param disconnected clients disconnected for falling too far behind
+     */
+    public record Stats(int sessions, int queued, int maxDepth, long sent, long dropped, long disconnected) {
+    }
+    
+    // A serialized message, and whether a later game state makes it stale
+    private record Outbound(String payload, boolean loadGame) {
+    }
+    
+    private final Config config;
+    private final Map<Session, SessionQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+    
+    public OutboundQueues(Config config) {
+        this.config = config;
+    }
+    
+    /**
+     * Queues a message for the session and returns without waiting for it to be sent
+     *
+     * @param loadGame whether the message is a game state that a later one makes stale
+     */
+    public void send(Session session, String payload, boolean loadGame) {
+        if (!session.isOpen()) return;
+        queues.computeIfAbsent(session, SessionQueue::new).offer(new Outbound(payload, loadGame));
+    }
+    
+    /**
+     * Drops the session's queue, for when it disconnects
+     */
+    public void remove(Session session) {
+        var queue = queues.remove(session);
+        if (queue != null) queue.clear();
+    }
+    
+    public Stats getStats() {
+        int queued = 0;
+        int maxDepth = 0;
+        for (var queue : queues.values()) {
+            int depth = queue.depth();
+            queued += depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        return new Stats(queues.size(), queued, maxDepth, sent.get(), dropped.get(), disconnected.get());
+    }
+    
+    private class SessionQueue implements WriteCallback {
+        private final Session session;
+        private final Deque<Outbound> waiting = new ArrayDeque<>();
+        private boolean sending = false;
+        private boolean closed = false;
+        
+        SessionQueue(Session session) {
+            this.session = session;
+        }
+        
+        void offer(Outbound message) {
+            Outbound next = null;
+            boolean overflowed = false;
+            synchronized (this) {
+                if (closed) return;
+                if (waiting.size() >= config.capacity() && !makeRoom(message)) {
+                    overflowed = true;
+                    closed = true;
+                    waiting.clear();
+                } else {
+                    waiting.addLast(message);
+                    if (!sending) {
+                        sending = true;
+                        next = waiting.pollFirst();
+                    }
+                }
+            }
+            if (overflowed) {
+                disconnect();
+            } else if (next != null) {
+                session.getRemote().sendString(next.payload(), this);
+            }
+        }
+        
+        // Called holding the lock, with the queue full
+        private boolean makeRoom(Outbound incoming) {
+            if (config.overflow() == OverflowPolicy.DISCONNECT) return false;
+            // The newest game state stays: the incoming message if it is one, or else the last one waiting
+            Outbound newest = incoming.loadGame() ? incoming : null;
+            for (var messages = waiting.descendingIterator(); newest == null && messages.hasNext(); ) {
+                var message = messages.next();
+                if (message.loadGame()) newest = message;
+            }
+            var keep = newest;
+            int before = waiting.size();
+            waiting.removeIf(message -> message.loadGame() && message != keep);
+            dropped.addAndGet(before - waiting.size());
+            return waiting.size() < config.capacity();
+        }
+        
+        synchronized int depth() {
+            return waiting.size();
+        }
+        
+        synchronized void clear() {
+            closed = true;
+            waiting.clear();
+        }
+        
+        // The previous message went out; start on the next, if there is one
+        @Override
+        public void writeSuccess() {
+            sent.incrementAndGet();
+            Outbound next;
+            synchronized (this) {
+                next = closed ? null : waiting.pollFirst();
+                sending = next != null;
+            }
+            if (next != null) {
+                session.getRemote().sendString(next.payload(), this);
+            }
+        }
+        
+        @Override
+        public void writeFailed(Throwable error) {
+            System.out.println("WebSocket send failed: " + error.getMessage());
+            clear();
+            queues.remove(session, this);
+        }
+        
+        private void disconnect() {
+            disconnected.incrementAndGet();
+            queues.remove(session, this);
+            System.out.println("Disconnecting WebSocket client that fell behind: " + session.getRemoteAddress());
+            session.close(StatusCode.POLICY_VIOLATION, "Client is not keeping up with messages");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package handler;
+
+import chess.ChessGame;
+import org.eclipse.jetty.websocket.api.Session;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The WebSocket sessions in each game, and for each session the games it is in along with who it
+ * joined as. Sessions can be added and removed from any thread. Disconnecting only touches the games
+ * the session was in, found through the reverse index, however many sessions are open.
+ */
+public class SessionRegistry {
+    
+    public enum Role {
+        PLAYER,
+        OBSERVER
+    }
+    
+    /**
+     * What a session joined a game as, recorded when it joined
+     *
+     * @param gameID   game joined
+     * @param username user the session is authenticated as
+     * @param color    color played, or null for an observer
+     * @param role     whether the session plays or watches
+     */
+    public record Membership(int gameID, String username, ChessGame.TeamColor color, Role role) {
+    }
+    
+    private final Map<Integer, Set<Session>> sessionsByGame = new ConcurrentHashMap<>();
+    private final Map<Session, Map<Integer, Membership>> gamesBySession = new ConcurrentHashMap<>();
+    
+    /**
+     * Adds the session to the game, replacing what it was recorded as if it had already joined
+     */
+    public void join(Session session, Membership membership) {
+        // add and remove under the map's lock for the key, so an add can't land in a set or map being dropped
+        sessionsByGame.compute(membership.gameID(), (gameID, sessions) -> {
+            if (sessions == null) {
+                sessions = ConcurrentHashMap.newKeySet();
+            }
+            sessions.add(session);
+            return sessions;
+        });
+        gamesBySession.compute(session, (key, games) -> {
+            if (games == null) {
+                games = new ConcurrentHashMap<>();
+            }
+            games.put(membership.gameID(), membership);
+            return games;
+        });
+        // a session that closed while joining would otherwise never be removed; the close handler may have
+        // run between the two adds, before the reverse index led to this game, so take it out directly too
+        if (!session.isOpen()) {
+            remove(session);
+            removeFromGame(session, membership.gameID());
+        }
+    }
+    
+    /**
+     * Takes the session out of one game
+     *
+     * @return what the session had joined the game as, or null if it wasn't in the game
+     */
+    public Membership leave(Session session, int gameID) {
+        var removed = new Membership[1];
+        gamesBySession.computeIfPresent(session, (key, games) -> {
+            removed[0] = games.remove(gameID);
+            return games.isEmpty() ? null : games;
+        });
+        removeFromGame(session, gameID);
+        return removed[0];
+    }
+    
+    /**
+     * Takes the session out of every game it is in, for when it disconnects
+     *
+     * @return what the session had joined each game as
+     */
+    public Collection<Membership> remove(Session session) {
+        var games = gamesBySession.remove(session);
+        if (games == null) {
+            return List.of();
+        }
+        games.keySet().forEach(gameID -> removeFromGame(session, gameID));
+        return games.values();
+    }
+    
+    /**
+     * @return the sessions in the game, which may change while being iterated
+     */
+    public Set<Session> sessions(int gameID) {
+        return sessionsByGame.getOrDefault(gameID, Set.of());
+    }
+    
+    /**
+     * @return what the session joined the game as, or null if it isn't in the game
+     */
+    public Membership membership(Session session, int gameID) {
+        var games = gamesBySession.get(session);
+        return games == null ? null : games.get(gameID);
+    }
+    
+    /**
+     * @return number of sessions in at least one game
+     */
+    public int sessionCount() {
+        return gamesBySession.size();
+    }
+    
+    private void removeFromGame(Session session, int gameID) {
+        sessionsByGame.computeIfPresent(gameID, (key, sessions) -> {
+            sessions.remove(session);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+}
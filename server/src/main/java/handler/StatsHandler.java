@@ -0,0 +1,39 @@
+package handler;
+
+import com.google.gson.Gson;
+import dataaccess.ConnectionPool;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Reports the server's counters as JSON, for operators watching a running server
+ */
+public class StatsHandler implements Route {
+    private final WebSocketHandler webSocketHandler;
+    private final Supplier<ConnectionPool.Stats> poolStats;
+    private final Gson gson = new Gson();
+    
+    /**
+     * @param poolStats the database connection pool's counters, or null if the server doesn't use the database
+     */
+    public StatsHandler(WebSocketHandler webSocketHandler, Supplier<ConnectionPool.Stats> poolStats) {
+        this.webSocketHandler = webSocketHandler;
+        this.poolStats = poolStats;
+    }
+    
+    @Override
+    public Object handle(Request req, Response res) {
+        var stats = new LinkedHashMap<String, Object>();
+        stats.put("outbound", webSocketHandler.getOutboundStats());
+        if (poolStats != null) {
+            stats.put("pool", poolStats.get());
+        }
+        res.status(200);
+        res.type("application/json");
+        return gson.toJson(stats);
+    }
+}
@@ -1,44 +1,63 @@
 package handler;
 
 import chess.ChessGame;
+import chess.ChessJsonAdapters;
 import chess.ChessMove;
 import com.google.gson.*;
 import dataaccess.AuthDAO;
-import dataaccess.GameDAO;
 import exception.BadRequestException;
 import exception.DataAccessException;
 import exception.UnauthorizedException;
 import model.GameData;
-import model.request.ListGamesRequest;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.*;
-import service.GameService;
+import service.GameActor;
+import service.GameActors;
 import websocket.messages.Error;
 import websocket.messages.LoadGame;
 import websocket.messages.Notification;
 import websocket.messages.ServerMessage;
 import websocket.commands.*;
 
-import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+
+import static service.AuthUtil.verifyAuthToken;
 
 @WebSocket
 public class WebSocketHandler {
     
-    private final GameService gameService;
+    // Printing every message, with the board of each game state, is for debugging only
+    private static final boolean LOG_MESSAGES = Boolean.getBoolean("wsLogMessages");
+    
+    private final GameActors gameActors;
     private final AuthDAO authDAO;
-    final Gson gson = new GsonBuilder()
+    final Gson gson = ChessJsonAdapters.register(new GsonBuilder())
             .registerTypeAdapter(UserGameCommand.class, new UserGameCommandDeserializer())
             .registerTypeAdapter(UserGameCommand.class, new UserGameCommandSerializer())
             .create();
-    private final Map<Integer, Set<Session>> gameSessions;    // Map of game IDs to the set of sessions in the game
+    private final SessionRegistry sessions = new SessionRegistry();    // Sessions in each game, and who they joined as
+    private final OutboundQueues outbound;    // Messages waiting to be sent to each session
     
-    public WebSocketHandler(AuthDAO authDAO, GameDAO gameDAO) {
+    public WebSocketHandler(AuthDAO authDAO, GameActors gameActors, OutboundQueues.Config outboundConfig) {
         this.authDAO = authDAO;
-        this.gameService = new GameService(authDAO, gameDAO);
-        gameSessions = new ConcurrentHashMap<>();
+        this.gameActors = gameActors;
+        this.outbound = new OutboundQueues(outboundConfig);
+    }
+    
+    /**
+     * @return the outbound queues' current depths and counters
+     */
+    public OutboundQueues.Stats getOutboundStats() {
+        return outbound.getStats();
+    }
+    
+    /**
+     * Tells everyone in the game that a change they were shown could not be saved, and shows them the game as saved
+     */
+    public void showSavedGame(GameData saved) {
+        sendMessageToAllPlayers(saved.gameID(), new Error("The last change to the game could not be saved"));
+        sendMessageToAllPlayers(saved.gameID(), new LoadGame(saved));
     }
     
     @OnWebSocketConnect
@@ -52,24 +71,39 @@ public class WebSocketHandler {
         // Handle WebSocket connection close
         System.out.println("WebSocket connection closed: " + session.getRemoteAddress());
         System.out.println("Reason: " + reason);
-        // Remove the session from the game it was in
-        gameSessions.values().forEach(sessions -> sessions.remove(session));
+        // Remove the session from the games it was in, dropping anything still waiting to be sent to it
+        outbound.remove(session);
+        for (SessionRegistry.Membership membership : sessions.remove(session)) {
+            System.out.println("    " + membership.username() + " disconnected from game " + membership.gameID());
+        }
     }
     
     @OnWebSocketMessage
-    public void onMessage(Session session, String message) throws Exception {
+    public void onMessage(Session session, String message) {
         UserGameCommand command = gson.fromJson(message, UserGameCommand.class);
         System.out.println("Received command of type: " + command.getCommandType());
         
-        // Handle the command based on its type
-        switch (command.getCommandType()) {
-            case JOIN_PLAYER -> handleJoinPlayerCommand(session, (JoinPlayer) command);
-            case JOIN_OBSERVER -> handleJoinObserverCommand(session, (JoinObserver) command);
-            case MAKE_MOVE -> handleMakeMoveCommand(session, (MakeMove) command);
-            case LEAVE -> handleLeaveCommand(session, (Leave) command);
-            case RESIGN -> handleResignCommand(session, (Resign) command);
-            default -> session.getRemote().sendString("Unknown command type");
+        Integer gameID = switch (command) {
+            case JoinPlayer joinPlayer -> joinPlayer.gameID();
+            case JoinObserver joinObserver -> joinObserver.gameID();
+            case MakeMove makeMove -> makeMove.gameID();
+            case Leave leave -> leave.gameID();
+            case Resign resign -> resign.gameID();
+            default -> null;
+        };
+        if (gameID == null) {
+            sendMessage(session, new Error("Unknown command type"));
+            return;
         }
+        
+        // Run the command on the game's actor, after any commands already sent to the game
+        gameActors.submit(gameID, actor -> {
+            try {
+                handleCommand(session, command, actor);
+            } catch (Exception e) {
+                onError(session, e);
+            }
+        });
     }
     
     @OnWebSocketError
@@ -79,9 +113,22 @@ public class WebSocketHandler {
         sendMessage(session, new Error("An unexpected error occurred"));
     }
     
-    private void handleJoinPlayerCommand(Session session, JoinPlayer command) throws DataAccessException {
-        // Load the game state for root client
-        GameData gameData = getGameData(session, command.getAuthString(), command.gameID());
+    private void handleCommand(Session session, UserGameCommand command, GameActor actor) throws Exception {
+        // Handle the command based on its type
+        switch (command.getCommandType()) {
+            case JOIN_PLAYER -> handleJoinPlayerCommand(session, (JoinPlayer) command, actor);
+            case JOIN_OBSERVER -> handleJoinObserverCommand(session, (JoinObserver) command, actor);
+            case MAKE_MOVE -> handleMakeMoveCommand(session, (MakeMove) command, actor);
+            case LEAVE -> handleLeaveCommand(session, (Leave) command, actor);
+            case RESIGN -> handleResignCommand(session, (Resign) command, actor);
+        }
+    }
+    
+    private void handleJoinPlayerCommand(Session session, JoinPlayer command, GameActor actor)
+            throws DataAccessException {
+        // Load the game state for root client, including players who just joined through the HTTP API
+        actor.reload();
+        GameData gameData = getGameData(session, command.getAuthString(), actor);
         if (gameData == null) return;
         
         String username = authDAO.getAuth(command.getAuthString()).username();
@@ -100,7 +147,8 @@ public class WebSocketHandler {
         sendMessage(session, loadGame);
         
         // Add root client's session to the game
-        addSessionToGame(command.gameID(), session);
+        sessions.join(session, new SessionRegistry.Membership(command.gameID(), username, command.playerColor(),
+                SessionRegistry.Role.PLAYER));
         
         // Notify other players
         Notification notification = new Notification(SET_TEXT_COLOR_GREEN + "Player " + SET_TEXT_COLOR_BLUE + username +
@@ -108,37 +156,39 @@ public class WebSocketHandler {
         sendMessageToOtherPlayers(command.gameID(), session, notification);
     }
     
-    private void handleJoinObserverCommand(Session session, JoinObserver command) throws DataAccessException {
+    private void handleJoinObserverCommand(Session session, JoinObserver command, GameActor actor)
+            throws DataAccessException {
         // Load the game state for root client
-        GameData gameData = getGameData(session, command.getAuthString(), command.gameID());
+        GameData gameData = getGameData(session, command.getAuthString(), actor);
         if (gameData == null) return;
         
         LoadGame loadGame = new LoadGame(gameData);
         sendMessage(session, loadGame);
         
         // Add root client's session to the game
-        addSessionToGame(command.gameID(), session);
+        String username = authDAO.getAuth(command.getAuthString()).username();
+        sessions.join(session, new SessionRegistry.Membership(command.gameID(), username, null,
+                SessionRegistry.Role.OBSERVER));
         
         // Notify other players
-        String username = authDAO.getAuth(command.getAuthString()).username();
         Notification notification = new Notification(SET_TEXT_COLOR_BLUE + username +
                 SET_TEXT_COLOR_GREEN + " started observing this game!" + RESET_ALL);
         sendMessageToOtherPlayers(command.gameID(), session, notification);
     }
     
-    private void handleMakeMoveCommand(Session session, MakeMove command) throws Exception {
+    private void handleMakeMoveCommand(Session session, MakeMove command, GameActor actor) throws Exception {
+        if (getGameData(session, command.getAuthString(), actor) == null) return;
+        String username = authDAO.getAuth(command.getAuthString()).username();
+        ChessMove move = command.move();
+        GameData gameData;
         try {
-            gameService.makeMove(command);
+            gameData = actor.makeMove(username, move);
         } catch (BadRequestException e) {
             sendMessage(session, new Error(e.getMessage()));
             return;
         }
-        ChessMove move = command.move();
         
         // Notify and load the updated game state for all players
-        GameData gameData = getGameData(session, command.getAuthString(), command.gameID());
-        if (gameData == null) return;
-        String username = authDAO.getAuth(command.getAuthString()).username();
         LoadGame loadGame = new LoadGame(gameData);
         sendMessageToOtherPlayers(command.gameID(), session, new Notification(SET_TEXT_COLOR_GREEN +
                 "Player " + SET_TEXT_COLOR_BLUE + username + SET_TEXT_COLOR_GREEN +
@@ -166,20 +216,20 @@ public class WebSocketHandler {
         }
     }
     
-    private void handleLeaveCommand(Session session, Leave command) throws Exception {
-        GameData gameData = getGameData(session, command.getAuthString(), command.gameID());
+    private void handleLeaveCommand(Session session, Leave command, GameActor actor) throws Exception {
+        GameData gameData = getGameData(session, command.getAuthString(), actor);
         if (gameData == null) return;
         
-        // Remove from database
+        // Remove from the game
+        String username = authDAO.getAuth(command.getAuthString()).username();
         try {
-            gameService.leaveGame(command);
+            actor.leave(username);
         } catch (DataAccessException e) {
             sendMessage(session, new Error("Failed to leave game"));
             return;
         }
         
         // Notify other players
-        String username = authDAO.getAuth(command.getAuthString()).username();
         Notification notification;
         if (!Objects.equals(gameData.whiteUsername(), username) &&
                 !Objects.equals(gameData.blackUsername(), username)) {
@@ -192,11 +242,11 @@ public class WebSocketHandler {
         sendMessageToOtherPlayers(command.gameID(), session, notification);
         
         // Remove the session from the game
-        removeSessionFromGame(command.gameID(), session);
+        sessions.leave(session, command.gameID());
     }
     
-    private void handleResignCommand(Session session, Resign command) throws Exception {
-        GameData gameData = getGameData(session, command.getAuthString(), command.gameID());
+    private void handleResignCommand(Session session, Resign command, GameActor actor) throws Exception {
+        GameData gameData = getGameData(session, command.getAuthString(), actor);
         if (gameData == null) return;
         if (gameData.game().getWinner() != null) {
             sendMessage(session, new Error("Game is already over"));
@@ -206,7 +256,7 @@ public class WebSocketHandler {
         
         // Mark game as over
         try {
-            gameService.resignGame(command);
+            actor.resign(username);
         } catch (DataAccessException e) {
             sendMessage(session, new Error("Failed to resign game"));
             return;
@@ -219,75 +269,69 @@ public class WebSocketHandler {
     }
     
     private void sendMessage(Session session, ServerMessage message) {
-        try {
-            String jsonServerMessage = gson.toJson(message);
-            System.out.println("Sending message of type: " + message.getServerMessageType());
-            if (message.getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME) {
-                LoadGame loadGame = (LoadGame) message;
-                System.out.println("    with board state: \n" + loadGame.gameData().game().getBoard());
-            } else if (message.getServerMessageType() == ServerMessage.ServerMessageType.NOTIFICATION) {
-                Notification notification = (Notification) message;
-                System.out.println("    with message: " + notification.message());
-            } else if (message.getServerMessageType() == ServerMessage.ServerMessageType.ERROR) {
-                Error error = (Error) message;
-                System.out.println("    with error message: " + error.errorMessage());
-            }
-            session.getRemote().sendString(jsonServerMessage);
-        } catch (IOException e) {
-            e.printStackTrace();
+        send(session, encode(message), isLoadGame(message));
+    }
+    
+    // Serialize a message once, however many sessions it is sent to, logging it with -DwsLogMessages=true
+    private String encode(ServerMessage message) {
+        if (LOG_MESSAGES) {
+            logMessage(message);
         }
+        return gson.toJson(message);
     }
     
-    private void addSessionToGame(int gameID, Session session) {
-        gameSessions.computeIfAbsent(gameID, key -> new HashSet<>()).add(session);
+    private static void logMessage(ServerMessage message) {
+        System.out.println("Sending message of type: " + message.getServerMessageType());
+        if (message.getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME) {
+            LoadGame loadGame = (LoadGame) message;
+            System.out.println("    with position: " + loadGame.gameData().game().toFen());
+        } else if (message.getServerMessageType() == ServerMessage.ServerMessageType.NOTIFICATION) {
+            Notification notification = (Notification) message;
+            System.out.println("    with message: " + notification.message());
+        } else if (message.getServerMessageType() == ServerMessage.ServerMessageType.ERROR) {
+            Error error = (Error) message;
+            System.out.println("    with error message: " + error.errorMessage());
+        }
     }
     
-    private void removeSessionFromGame(int gameID, Session session) {
-        gameSessions.computeIfPresent(gameID, (key, sessions) -> {
-            sessions.remove(session);
-            return sessions.isEmpty() ? null : sessions;
-        });
+    // Queue the message without waiting for it to go out, so a slow client doesn't hold up the others
+    private void send(Session session, String payload, boolean loadGame) {
+        outbound.send(session, payload, loadGame);
+    }
+    
+    private static boolean isLoadGame(ServerMessage message) {
+        return message.getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME;
     }
     
     private void sendMessageToOtherPlayers(int gameID, Session excludeSession, ServerMessage message) {
         // Send the message to all clients in the game except the excluded session
-        Set<Session> sessions = gameSessions.get(gameID);
-        if (sessions != null) {
-            sessions.stream()
-                    .filter(session -> !session.equals(excludeSession))
-                    .forEach(session -> sendMessage(session, message));
+        String payload = encode(message);
+        boolean loadGame = isLoadGame(message);
+        for (Session session : sessions.sessions(gameID)) {
+            if (!session.equals(excludeSession)) {
+                send(session, payload, loadGame);
+            }
         }
     }
     
     private void sendMessageToAllPlayers(int gameID, ServerMessage message) {
-        // Implement the logic to send the message to all clients in the game
-        Set<Session> sessions = gameSessions.get(gameID);
-        if (sessions != null) {
-            sessions.forEach(session -> sendMessage(session, message));
-        }
+        // Send the message to every client in the game
+        String payload = encode(message);
+        boolean loadGame = isLoadGame(message);
+        sessions.sessions(gameID).forEach(session -> send(session, payload, loadGame));
     }
     
-    private GameData getGameData(Session session, String authToken, Integer gameID) throws DataAccessException {
-        Collection<GameData> games;
+    private GameData getGameData(Session session, String authToken, GameActor actor) throws DataAccessException {
         try {
-            games = gameService.listGames(new ListGamesRequest(authToken)).games();
+            verifyAuthToken(authDAO, authToken);
+            return actor.game();
         } catch (UnauthorizedException e) {
-            sendMessage(session, new Error("Unauthorized to list games"));
+            sendMessage(session, new Error("Unauthorized to view game"));
             return null;
-        }
-        
-        GameData gameData = null;
-        for (GameData game : games) {
-            if (game.gameID().equals(gameID)) {
-                gameData = game;
-                break;
-            }
-        }
-        if (gameData == null) {
+        } catch (BadRequestException e) {
             sendMessage(session, new Error("Game not found"));
             return null;
         }
-        return gameData;
     }
     
     static class UserGameCommandDeserializer implements JsonDeserializer<UserGameCommand> {
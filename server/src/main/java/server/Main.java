@@ -14,6 +14,9 @@ public class Main {
     public static void main(String[] args) {
         // Get desired database type from system property or default to mysql
         // When running, provide as VM option: -DuserDaoType=memory or -DuserDaoType=mysql
+        // Add -DvirtualThreads=true to handle each request on a virtual thread
+        // WebSocket send queues: -DwsQueueCapacity=64 -DwsOverflowPolicy=DROP_STALE_LOAD_GAME or DISCONNECT
+        // GET /stats reports the WebSocket send queues' depths, drops and disconnects, and the database pool's counters
         String daoType = System.getProperty("DaoType", "mysql");
         AuthDAO authDAO;
         GameDAO gameDAO;
@@ -2,6 +2,7 @@ package server;
 
 import com.google.gson.Gson;
 import dataaccess.AuthDAO;
+import dataaccess.DatabaseManager;
 import dataaccess.GameDAO;
 import dataaccess.UserDAO;
 import dataaccess.mysqldb.MySQLAuthDAO;
@@ -9,7 +10,10 @@ import dataaccess.mysqldb.MySQLGameDAO;
 import dataaccess.mysqldb.MySQLUserDAO;
 import exception.*;
 import handler.*;
+import service.GameActors;
 import spark.*;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
 import java.util.Map;
 
@@ -17,6 +21,7 @@ public class Server {
     private final AuthDAO authDAO;
     private final GameDAO gameDAO;
     private final UserDAO userDAO;
+    private GameActors gameActors;
     
     public Server(AuthDAO authDAO, GameDAO gameDAO, UserDAO userDAO) {
         this.authDAO = authDAO;
@@ -32,12 +37,22 @@ public class Server {
     
     public int run(int desiredPort) {
         Gson gson = new Gson();
+        gameActors = new GameActors(gameDAO);
+        
+        // Run requests and WebSocket messages on virtual threads when started with -DvirtualThreads=true
+        var jettyFactory = new EmbeddedJettyFactory();
+        if (Boolean.getBoolean("virtualThreads")) {
+            jettyFactory.withThreadPool(new VirtualThreadPool());
+        }
+        EmbeddedServers.add(EmbeddedServers.defaultIdentifier(), jettyFactory);
         Spark.port(desiredPort);
         
         // Setup WebSocket
         Spark.staticFiles.location("web");
         Spark.webSocketIdleTimeoutMillis(15 * 60 * 1000); // 15 minutes
-        Spark.webSocket("/connect", new WebSocketHandler(authDAO, gameDAO));
+        var webSocketHandler = new WebSocketHandler(authDAO, gameActors, OutboundQueues.Config.fromSystemProperties());
+        gameActors.setWriteFailureListener(webSocketHandler::showSavedGame);
+        Spark.webSocket("/connect", webSocketHandler);
         
         // Register endpoints
         Spark.post("/user", new RegisterHandler(authDAO, userDAO));
@@ -46,7 +61,9 @@ public class Server {
         Spark.post("/game", new CreateGameHandler(authDAO, gameDAO));
         Spark.get("/game", new ListGamesHandler(authDAO, gameDAO));
         Spark.put("/game", new JoinGameHandler(authDAO, gameDAO));
-        Spark.delete("/db", new ClearApplicationHandler(gameDAO, authDAO, userDAO));
+        Spark.delete("/db", new ClearApplicationHandler(gameDAO, authDAO, userDAO, gameActors));
+        Spark.get("/stats", new StatsHandler(webSocketHandler,
+                gameDAO instanceof MySQLGameDAO ? DatabaseManager::getPoolStats : null));
         
         // Setup global exception handlers
         Spark.exception(BadRequestException.class, (e, req, res) -> {
@@ -88,6 +105,10 @@ public class Server {
     public void stop() {
         Spark.stop();
         Spark.awaitStop();
+        // Only once no more commands can arrive
+        if (gameActors != null) {
+            gameActors.close();
+        }
     }
     
     public int port() {
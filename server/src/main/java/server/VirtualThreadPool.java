@@ -0,0 +1,73 @@
+package server;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.util.thread.TryExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jetty thread pool that runs every task on a new virtual thread, so HTTP requests and WebSocket
+ * messages that block on the database or on password hashing park cheaply instead of holding one of
+ * a fixed number of platform threads. There is no cap on threads; the database connection pool is
+ * what limits how much blocking work piles up (see db.pool.maxSize and db.pool.maxWaiting).
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool, TryExecutor {
+    private final ThreadFactory factory = Thread.ofVirtual().name("jetty-virtual-", 0).factory();
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile CountDownLatch stopped = new CountDownLatch(1);
+    
+    @Override
+    protected void doStart() {
+        stopped = new CountDownLatch(1);
+    }
+    
+    @Override
+    protected void doStop() {
+        stopped.countDown();
+    }
+    
+    @Override
+    public void execute(Runnable task) {
+        running.incrementAndGet();
+        factory.newThread(() -> {
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        }).start();
+    }
+    
+    // Starting a virtual thread never has to wait for one to free up
+    @Override
+    public boolean tryExecute(Runnable task) {
+        execute(task);
+        return true;
+    }
+    
+    @Override
+    public void join() throws InterruptedException {
+        stopped.await();
+    }
+    
+    /**
+     * @return number of tasks running now
+     */
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+    
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+    
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,246 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import dataaccess.GameDAO;
+import exception.BadRequestException;
+import exception.ConflictException;
+import exception.DataAccessException;
+import model.GameData;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One active game. Tasks sent to the game wait in its mailbox and run one at a time, in the order
+ * they arrived, so the actor's copy of the game can be read and changed without locks. That copy is
+ * the authoritative state while the game is active: moves, resignations and players leaving are
+ * applied to it straight away and written to the database behind it, in the same order.
+ * <p>
+ * The methods other than {@link #isIdle} may only be called from a task running on the actor.
+ */
+public class GameActor {
+    // Times a write is tried again, from a fresh read, when the stored game was changed elsewhere
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+    
+    /**
+     * Work to run on a game's actor
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run(GameActor actor) throws Exception;
+    }
+    
+    /**
+     * Told, from a task on the game's actor, when a change the players were shown could not be saved
+     */
+    @FunctionalInterface
+    public interface WriteFailureListener {
+        void writeFailed(GameData saved) throws Exception;
+    }
+    
+    // A change to write on top of the stored game; returns the game as it is now stored, or as it was if unchanged
+    private interface Write {
+        GameData apply(GameData latest) throws DataAccessException;
+    }
+    
+    private final int gameID;
+    private final GameDAO gameDAO;
+    private final Executor executor;
+    private final WriteFailureListener writeFailureListener;
+    private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile long lastActiveMillis = System.currentTimeMillis();
+    
+    private GameData game;          // authoritative copy, loaded on first use
+    // The game as last written, for the next write's version and players only: its board may be the
+    // authoritative copy, which keeps changing, so each write takes a snapshot of the position
+    private GameData stored;
+    private volatile CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+    private volatile boolean writeFailed = false;
+    private boolean missing = false;    // the last load found no such game
+    
+    GameActor(int gameID, GameDAO gameDAO, Executor executor, WriteFailureListener writeFailureListener) {
+        this.gameID = gameID;
+        this.gameDAO = gameDAO;
+        this.executor = executor;
+        this.writeFailureListener = writeFailureListener;
+    }
+    
+    public int gameID() {
+        return gameID;
+    }
+    
+    /**
+     * @return the game, loading it from the database if this actor hasn't yet
+     * @throws BadRequestException if the game does not exist
+     */
+    public GameData game() throws DataAccessException {
+        if (game == null || writeFailed) {
+            // anything still being written has to land before the stored game can be trusted
+            writes.join();
+            writeFailed = false;
+            game = gameDAO.getGame(gameID);
+            stored = game;
+            missing = game == null;
+            if (game == null) {
+                throw new BadRequestException("Game does not exist");
+            }
+        }
+        return game;
+    }
+    
+    /**
+     * Drops the actor's copy so the next {@link #game} reads the database, picking up players who
+     * joined through the HTTP API
+     */
+    public void reload() {
+        game = null;
+    }
+    
+    /**
+     * Checks that the client may make the move, makes it and writes it behind
+     *
+     * @return the game after the move
+     * @throws BadRequestException if the client may not make the move
+     */
+    public GameData makeMove(String username, ChessMove move) throws DataAccessException {
+        GameData current = game();
+        GameService.applyMove(current, username, move);
+        var position = new ChessGame(current.game());
+        writeBehind(latest -> {
+            var updated = new GameData(gameID, latest.whiteUsername(), latest.blackUsername(), latest.gameName(),
+                    position, latest.version());
+            gameDAO.addMove(updated, move);
+            return written(updated);
+        });
+        return current;
+    }
+    
+    /**
+     * Ends the game with the client's opponent as the winner and writes it behind
+     *
+     * @throws BadRequestException if the client is not a player in the game
+     */
+    public GameData resign(String username) throws DataAccessException {
+        GameData current = game();
+        GameService.applyResign(current, username);
+        var position = new ChessGame(current.game());
+        writeBehind(latest -> {
+            var updated = new GameData(gameID, latest.whiteUsername(), latest.blackUsername(), latest.gameName(),
+                    position, latest.version());
+            gameDAO.updateGame(updated);
+            return written(updated);
+        });
+        return current;
+    }
+    
+    /**
+     * Empties the client's seat, if they have one, and writes it behind
+     *
+     * @return the game after the client left
+     */
+    public GameData leave(String username) throws DataAccessException {
+        GameData current = game();
+        GameData updated = GameService.withoutPlayer(current, username);
+        if (updated != current) {
+            game = updated;
+            var position = new ChessGame(current.game());
+            writeBehind(latest -> {
+                var withoutClient = GameService.withoutPlayer(latest, username);
+                if (withoutClient == latest) return latest;
+                withoutClient = new GameData(gameID, withoutClient.whiteUsername(), withoutClient.blackUsername(),
+                        withoutClient.gameName(), position, withoutClient.version());
+                gameDAO.updateGame(withoutClient);
+                return written(withoutClient);
+            });
+        }
+        return updated;
+    }
+    
+    // Queue a task; the first task queued on an idle actor starts it draining the mailbox
+    void enqueue(Runnable task) {
+        lastActiveMillis = System.currentTimeMillis();
+        mailbox.add(task);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+    
+    /**
+     * @return true if nothing is queued, running or waiting to be written, and nothing was queued since the cutoff
+     */
+    boolean isIdle(long cutoffMillis) {
+        return !scheduled.get() && mailbox.isEmpty() && writes.isDone() && lastActiveMillis < cutoffMillis;
+    }
+    
+    // Wait for the writes queued so far to finish, whether or not they succeed
+    void awaitWrites() {
+        writes.handle((result, error) -> null).join();
+    }
+    
+    /**
+     * @return true if the game wasn't found when last loaded and no more tasks are queued, so the actor can go
+     */
+    boolean isMissing() {
+        return missing && mailbox.isEmpty();
+    }
+    
+    private void drain() {
+        while (true) {
+            Runnable task;
+            while ((task = mailbox.poll()) != null) {
+                task.run();
+            }
+            scheduled.set(false);
+            // a task queued after the last poll but before the flag was cleared would otherwise wait for the next one
+            if (mailbox.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+    
+    private void writeBehind(Write write) {
+        writes = writes.thenRunAsync(() -> persist(write), executor);
+    }
+    
+    private void persist(Write write) {
+        // writes queued after one that failed build on a change that was never saved; the reload replaces them
+        if (writeFailed) return;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    stored = write.apply(stored);
+                    return;
+                } catch (ConflictException e) {
+                    // changed elsewhere, e.g. a player joined through the HTTP API; build on the new version
+                    if (attempt == MAX_WRITE_ATTEMPTS) throw e;
+                    stored = gameDAO.getGame(gameID);
+                    if (stored == null) throw new BadRequestException("Game does not exist");
+                }
+            }
+        } catch (DataAccessException | RuntimeException e) {
+            // the players were shown a change that wasn't saved; start again from what was
+            System.out.println("Failed to save game " + gameID + ": " + e.getMessage());
+            writeFailed = true;
+            enqueue(this::reportWriteFailure);
+        }
+    }
+    
+    // Reload the game and show the players what was actually saved
+    private void reportWriteFailure() {
+        try {
+            writeFailureListener.writeFailed(game());
+        } catch (Exception e) {
+            System.out.println("Failed to report unsaved change to game " + gameID + ": " + e.getMessage());
+        }
+    }
+    
+    // The game as stored after a successful write, which bumped its version
+    private static GameData written(GameData game) {
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(), game.game(),
+                game.version() + 1);
+    }
+}
@@ -0,0 +1,101 @@
+package service;
+
+import dataaccess.GameDAO;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The actors of the games that are being played, created when a game gets its first task and retired
+ * once it has sat idle for a while. Each actor runs its tasks one at a time on a virtual thread, so a
+ * game's commands are applied in order without locking while any number of games run in parallel.
+ * Call {@link #close} when the server stops.
+ */
+public final class GameActors implements AutoCloseable {
+    // How long an actor keeps its game in memory after its last task
+    private static final long IDLE_MILLIS = 5 * 60 * 1000;
+    
+    private final GameDAO gameDAO;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "game-actor-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Integer, GameActor> actors = new ConcurrentHashMap<>();
+    private volatile GameActor.WriteFailureListener writeFailureListener = saved -> {};
+    
+    public GameActors(GameDAO gameDAO) {
+        this.gameDAO = gameDAO;
+        reaper.scheduleWithFixedDelay(this::retireIdle, IDLE_MILLIS, IDLE_MILLIS / 5, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Sets who is told when a game's change could not be saved, to show its players the game as it was saved
+     */
+    public void setWriteFailureListener(GameActor.WriteFailureListener listener) {
+        writeFailureListener = listener;
+    }
+    
+    /**
+     * Queues a task on the game's actor, to run after the tasks already queued for the game
+     */
+    public void submit(int gameID, GameActor.Task task) {
+        // queue inside compute so the actor can't be retired between looking it up and queueing on it
+        actors.compute(gameID, (id, actor) -> {
+            if (actor == null) {
+                actor = new GameActor(id, gameDAO, executor, saved -> writeFailureListener.writeFailed(saved));
+            }
+            var target = actor;
+            actor.enqueue(() -> {
+                try {
+                    task.run(target);
+                } catch (Exception e) {
+                    System.out.println("Task on game " + id + " failed: " + e.getMessage());
+                }
+                // drop the actor of a game that doesn't exist, so made-up IDs can't fill the map; checked
+                // under the map's lock so no task can be queued on the actor as it goes
+                if (target.isMissing()) {
+                    actors.computeIfPresent(id, (key, current) ->
+                            current == target && target.isMissing() ? null : current);
+                }
+            });
+            return actor;
+        });
+    }
+    
+    /**
+     * @return number of games with an actor
+     */
+    public int size() {
+        return actors.size();
+    }
+    
+    /**
+     * Forgets every game once its pending writes are done, for when the database is about to be cleared
+     */
+    public void clear() {
+        // writes still in flight would otherwise land on, or fail against, the cleared database
+        actors.values().forEach(GameActor::awaitWrites);
+        actors.clear();
+    }
+    
+    /**
+     * Stops retiring idle actors and waits for the games' tasks and pending writes to finish
+     */
+    @Override
+    public void close() {
+        reaper.shutdownNow();
+        executor.close();
+    }
+    
+    void retireIdle() {
+        long cutoff = System.currentTimeMillis() - IDLE_MILLIS;
+        actors.keySet().forEach(gameID ->
+                actors.computeIfPresent(gameID, (id, actor) -> actor.isIdle(cutoff) ? null : actor));
+    }
+}
@@ -1,26 +1,38 @@
 package service;
 
 import chess.ChessGame;
+import chess.ChessMove;
 import chess.InvalidMoveException;
 import dataaccess.AuthDAO;
 import dataaccess.GameDAO;
 import exception.AlreadyTakenException;
 import exception.BadRequestException;
+import exception.ConflictException;
 import exception.DataAccessException;
 import model.AuthData;
 import model.GameData;
+import model.GameFilter;
+import model.GameSummary;
 import model.request.CreateGameRequest;
 import model.request.JoinGameRequest;
 import model.request.ListGamesRequest;
 import model.response.CreateGameResponse;
-import model.response.ListGamesResponse;
-import websocket.commands.Leave;
-import websocket.commands.MakeMove;
-import websocket.commands.Resign;
+import model.response.ListGameSummariesResponse;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static service.AuthUtil.verifyAuthToken;
 
 public class GameService {
+    // Times a game update is tried before giving up when other requests keep changing the game
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+    // Games listed per page when the request doesn't say, and the most it may ask for
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 100;
+    // Serializes updates to the same game, shared by every GameService since each handler has its own
+    private static final StripedLocks GAME_LOCKS = new StripedLocks(64);
+    
     private final AuthDAO authDAO;
     private final GameDAO gameDAO;
     
@@ -29,7 +41,7 @@ public class GameService {
         this.gameDAO = gameDAO;
     }
     
-    public synchronized CreateGameResponse createGame(CreateGameRequest request) throws DataAccessException {
+    public CreateGameResponse createGame(CreateGameRequest request) throws DataAccessException {
         verifyAuthToken(authDAO, request.authToken());
         
         // Verify that the game name is not null
@@ -42,52 +54,73 @@ public class GameService {
         return new CreateGameResponse(gameID);
     }
     
-    public synchronized ListGamesResponse listGames(ListGamesRequest request) throws DataAccessException {
+    public ListGameSummariesResponse listGameSummaries(ListGamesRequest request) throws DataAccessException {
         verifyAuthToken(authDAO, request.authToken());
         
-        // Get games
-        return new ListGamesResponse(gameDAO.listGames());
+        // Verify the page size
+        int limit = request.limit() != null ? request.limit() : DEFAULT_PAGE_SIZE;
+        if (limit < 1) {
+            throw new BadRequestException("Limit must be at least 1");
+        }
+        limit = Math.min(limit, MAX_PAGE_SIZE);
+        GameFilter filter = request.filter() != null ? request.filter() : GameFilter.ALL;
+        
+        // Get one page of the lobby's view of the games, plus one more to tell whether there is another page
+        List<GameSummary> games = gameDAO.listGameSummaries(filter, request.after(), limit + 1);
+        if (games.size() <= limit) {
+            return new ListGameSummariesResponse(games, null);
+        }
+        games = games.subList(0, limit);
+        return new ListGameSummariesResponse(new ArrayList<>(games), games.get(limit - 1).gameID());
     }
     
-    public synchronized void joinGame(JoinGameRequest request) throws DataAccessException {
+    public void joinGame(JoinGameRequest request) throws DataAccessException {
         verifyAuthToken(authDAO, request.authToken());
         
         // Get client's username
         AuthData auth = authDAO.getAuth(request.authToken());
         String username = auth.username();
         
-        // Verify that the game exists
-        GameData game = gameDAO.getGame(request.gameID());
-        if (game == null) {
-            throw new BadRequestException("Game does not exist");
-        }
-        
-        // Verify that the color is available
-        if ((request.playerColor() == ChessGame.TeamColor.WHITE && game.whiteUsername() != null) ||
-                (request.playerColor() == ChessGame.TeamColor.BLACK && game.blackUsername() != null)) {
-            throw new AlreadyTakenException("Color already taken");
-        }
-        
-        // Update game data according to client's request
-        GameData updatedGame = getGameData(request, game, username);
-        gameDAO.updateGame(updatedGame);
+        updateWithGameLocked(request.gameID(), () -> {
+            // Verify that the game exists
+            GameData game = gameDAO.getGame(request.gameID());
+            if (game == null) {
+                throw new BadRequestException("Game does not exist");
+            }
+            
+            // Verify that the color is available
+            if ((request.playerColor() == ChessGame.TeamColor.WHITE && game.whiteUsername() != null) ||
+                    (request.playerColor() == ChessGame.TeamColor.BLACK && game.blackUsername() != null)) {
+                throw new AlreadyTakenException("Color already taken");
+            }
+            
+            // Observers don't change the game data
+            if (request.playerColor() == null) {
+                return;
+            }
+            
+            // Update game data according to client's request
+            GameData updatedGame = getGameData(request, game, username);
+            gameDAO.updateGame(updatedGame);
+        });
     }
     
-    // Gameplay commands
+    // Helper methods
     
-    public synchronized void makeMove(MakeMove request) throws DataAccessException {
-        verifyAuthToken(authDAO, request.getAuthString());
-        
-        // Get client's username
-        AuthData auth = authDAO.getAuth(request.getAuthString());
-        String username = auth.username();
+    private static GameData getGameData(JoinGameRequest request, GameData game, String username) {
+        // If client supplies a color, check if available and update
+        String newWhiteUsername = request.playerColor() == ChessGame.TeamColor.WHITE ? username : game.whiteUsername();
+        String newBlackUsername = request.playerColor() == ChessGame.TeamColor.BLACK ? username : game.blackUsername();
         
-        // Verify that the game exists
-        GameData game = gameDAO.getGame(request.gameID());
-        if (game == null) {
-            throw new BadRequestException("Game does not exist");
-        }
+        // Else, client will join as an observer, not affecting game data
         
+        // Return updated game data
+        return new GameData(request.gameID(), newWhiteUsername, newBlackUsername, game.gameName(), game.game(),
+                game.version());
+    }
+    
+    // Check that the client may make the move, then make it on the game
+    static void applyMove(GameData game, String username, ChessMove move) throws BadRequestException {
         // Verify that the client is a player in the game
         if (!username.equals(game.whiteUsername()) && !username.equals(game.blackUsername())) {
             throw new BadRequestException("Client is not a player in the game");
@@ -107,52 +140,14 @@ public class GameService {
         
         // Make move
         try {
-            game.game().makeMove(request.move());
+            game.game().makeMove(move);
         } catch (InvalidMoveException e) {
             throw new BadRequestException("Invalid move");
         }
-        gameDAO.updateGame(game);
     }
     
-    public synchronized void leaveGame(Leave request) throws DataAccessException {
-        verifyAuthToken(authDAO, request.getAuthString());
-        
-        // Get client's username
-        AuthData auth = authDAO.getAuth(request.getAuthString());
-        String username = auth.username();
-        
-        // Verify that the game exists
-        GameData game = gameDAO.getGame(request.gameID());
-        if (game == null) {
-            throw new BadRequestException("Game does not exist");
-        }
-        
-        // If client is not a player in the game, they are an observer so gameData should not be updated
-        if (!username.equals(game.whiteUsername()) && !username.equals(game.blackUsername())) {
-            return;
-        }
-        
-        // Remove client from game
-        if (username.equals(game.whiteUsername())) {
-            gameDAO.updateGame(new GameData(game.gameID(), null, game.blackUsername(), game.gameName(), game.game()));
-        } else {
-            gameDAO.updateGame(new GameData(game.gameID(), game.whiteUsername(), null, game.gameName(), game.game()));
-        }
-    }
-    
-    public synchronized void resignGame(Resign request) throws DataAccessException {
-        verifyAuthToken(authDAO, request.getAuthString());
-        
-        // Get client's username
-        AuthData auth = authDAO.getAuth(request.getAuthString());
-        String username = auth.username();
-        
-        // Verify that the game exists
-        GameData game = gameDAO.getGame(request.gameID());
-        if (game == null) {
-            throw new BadRequestException("Game does not exist");
-        }
-        
+    // Check that the client is a player, then end the game with their opponent as the winner
+    static void applyResign(GameData game, String username) throws BadRequestException {
         // Verify that the client is a player in the game
         if (!username.equals(game.whiteUsername()) && !username.equals(game.blackUsername())) {
             throw new BadRequestException("Client is not a player in the game");
@@ -164,22 +159,46 @@ public class GameService {
         } else {
             game.game().setWinner(ChessGame.TeamColor.WHITE);
         }
-        gameDAO.updateGame(game);
-        
     }
     
+    // The game with the client's seat emptied, or the same game if they are only observing
+    static GameData withoutPlayer(GameData game, String username) {
+        if (username.equals(game.whiteUsername())) {
+            return new GameData(game.gameID(), null, game.blackUsername(), game.gameName(), game.game(),
+                    game.version());
+        }
+        if (username.equals(game.blackUsername())) {
+            return new GameData(game.gameID(), game.whiteUsername(), null, game.gameName(), game.game(),
+                    game.version());
+        }
+        return game;
+    }
     
-    // Helper methods
+    // Read-modify-write of a game; throws ConflictException if another request changed the game first
+    private interface GameUpdate {
+        void run() throws DataAccessException;
+    }
     
-    private static GameData getGameData(JoinGameRequest request, GameData game, String username) {
-        // If client supplies a color, check if available and update
-        String newWhiteUsername = request.playerColor() == ChessGame.TeamColor.WHITE ? username : game.whiteUsername();
-        String newBlackUsername = request.playerColor() == ChessGame.TeamColor.BLACK ? username : game.blackUsername();
-        
-        // Else, client will join as an observer, not affecting game data
-        
-        // Return updated game data
-        return new GameData(request.gameID(), newWhiteUsername, newBlackUsername, game.gameName(), game.game());
+    // Run a game update holding the game's lock, so updates to one game take turns while other games go
+    // ahead in parallel. The lock only covers this server, so the update is still tried again, starting
+    // from a fresh read, if the game was changed in between.
+    private static void updateWithGameLocked(Integer gameID, GameUpdate update) throws DataAccessException {
+        var lock = GAME_LOCKS.get(gameID);
+        lock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    update.run();
+                    return;
+                } catch (ConflictException e) {
+                    if (attempt == MAX_UPDATE_ATTEMPTS) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
     }
     
     public void clearService() throws DataAccessException {
@@ -0,0 +1,33 @@
+package service;
+
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared out by key, so work on the same key is serialized while work on
+ * different keys usually runs in parallel. Two keys may share a lock, which only costs some
+ * parallelism, and memory stays the same however many keys there are.
+ */
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+    
+    /**
+     * @param stripes number of locks, rounded up to a power of two
+     */
+    public StripedLocks(int stripes) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+    
+    /**
+     * @return the lock for the key; the same key always gets the same lock
+     */
+    public ReentrantLock get(Object key) {
+        int hash = Objects.hashCode(key);
+        hash ^= hash >>> 16; // mix the high bits in, since only the low bits pick the lock
+        return locks[hash & (locks.length - 1)];
+    }
+}
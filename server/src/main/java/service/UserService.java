@@ -15,30 +15,38 @@ import static service.AuthUtil.verifyAuthToken;
 public class UserService {
     private final AuthDAO authDAO;
     private final UserDAO userDAO;
+    // Serializes registrations of the same username, shared by every UserService since each handler has its own
+    private static final StripedLocks USERNAME_LOCKS = new StripedLocks(64);
     
     public UserService(AuthDAO authDAO, UserDAO userDAO) {
         this.authDAO = authDAO;
         this.userDAO = userDAO;
     }
     
-    public synchronized RegisterResponse register(RegisterRequest request) throws DataAccessException {
+    public RegisterResponse register(RegisterRequest request) throws DataAccessException {
         if (request.username() == null || request.password() == null || request.email() == null) {
             throw new BadRequestException("missing required fields");
         }
         
-        // Check if user already exists
-        if (userDAO.getUser(request.username()) != null) {
-            throw new AlreadyTakenException("user already exists");
+        var lock = USERNAME_LOCKS.get(request.username());
+        lock.lock();
+        try {
+            // Check if user already exists
+            if (userDAO.getUser(request.username()) != null) {
+                throw new AlreadyTakenException("user already exists");
+            }
+            
+            // Create user and auth token
+            userDAO.insertUser(new UserData(request.username(), request.password(), request.email()));
+        } finally {
+            lock.unlock();
         }
-        
-        // Create user and auth token
-        userDAO.insertUser(new UserData(request.username(), request.password(), request.email()));
         AuthData authData = authDAO.createAuth(request.username());
         
         return new RegisterResponse(request.username(), authData.authToken());
     }
     
-    public synchronized LoginResponse login(LoginRequest request) throws DataAccessException {
+    public LoginResponse login(LoginRequest request) throws DataAccessException {
         // Check that user exists and password is correct when hashed
         try {
             UserData user = userDAO.getUser(request.username());
@@ -59,7 +67,7 @@ public class UserService {
         }
     }
     
-    public synchronized void logout(LogoutRequest request) throws DataAccessException {
+    public void logout(LogoutRequest request) throws DataAccessException {
         verifyAuthToken(authDAO, request.authToken());
         
         // Delete the auth token
@@ -0,0 +1,165 @@
+package dataaccess;
+
+import exception.DataAccessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTests {
+    
+    // Stand-in for a physical connection that records what was done to it
+    private static class FakeConnection {
+        boolean closed = false;
+        boolean valid = true;
+        boolean autoCommit = true;
+        int rollbacks = 0;
+        
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            closed = true;
+                            yield null;
+                        }
+                        case "isClosed" -> closed;
+                        case "isValid" -> valid;
+                        case "getAutoCommit" -> autoCommit;
+                        case "setAutoCommit" -> {
+                            autoCommit = (boolean) args[0];
+                            yield null;
+                        }
+                        case "rollback" -> {
+                            rollbacks++;
+                            yield null;
+                        }
+                        case "getCatalog" -> "chess";
+                        default -> throw new SQLException("Not supported by fake connection");
+                    });
+        }
+    }
+    
+    private List<FakeConnection> opened;
+    
+    @BeforeEach
+    public void setUp() {
+        opened = new ArrayList<>();
+    }
+    
+    private ConnectionPool newPool(int maxSize, long maxLifetimeMillis, long validateAfterIdleMillis) {
+        return newPool(new ConnectionPool.Config(maxSize, 50, maxLifetimeMillis, validateAfterIdleMillis, 1, 0, 0));
+    }
+    
+    private ConnectionPool newPool(ConnectionPool.Config config) {
+        return new ConnectionPool(() -> {
+            var connection = new FakeConnection();
+            opened.add(connection);
+            return connection.proxy();
+        }, config);
+    }
+    
+    @Test
+    public void testReusesConnections() throws DataAccessException, SQLException {
+        var pool = newPool(2, 0, 60000);
+        for (int i = 0; i < 5; i++) {
+            try (var conn = pool.getConnection()) {
+                assertEquals("chess", conn.getCatalog());
+            }
+        }
+        assertEquals(1, opened.size());
+        assertFalse(opened.get(0).closed);
+        
+        var stats = pool.getStats();
+        assertEquals(5, stats.acquired());
+        assertEquals(1, stats.idle());
+        assertEquals(0, stats.active());
+    }
+    
+    @Test
+    public void testAcquireTimesOutWhenExhausted() throws DataAccessException, SQLException {
+        var pool = newPool(1, 0, 60000);
+        try (var ignored = pool.getConnection()) {
+            assertThrows(DataAccessException.class, pool::getConnection);
+            assertEquals(1, pool.getStats().timeouts());
+        }
+        // the connection is free again once returned
+        pool.getConnection().close();
+    }
+    
+    @Test
+    public void testRefusesCallersBeyondMaxWaiting() throws Exception {
+        var pool = newPool(new ConnectionPool.Config(1, 5000, 0, 60000, 1, 0, 1));
+        var held = pool.getConnection();
+        
+        // one caller may wait for the held connection
+        var waiter = new Thread(() -> {
+            try {
+                pool.getConnection().close();
+            } catch (DataAccessException | SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        waiter.start();
+        while (pool.getStats().waiting() < 1) {
+            Thread.sleep(1);
+        }
+        
+        // the next is turned away without waiting
+        assertThrows(DataAccessException.class, pool::getConnection);
+        assertEquals(1, pool.getStats().rejected());
+        assertEquals(0, pool.getStats().timeouts());
+        
+        held.close();
+        waiter.join();
+        assertEquals(2, pool.getStats().acquired());
+    }
+    
+    @Test
+    public void testReturnedConnectionCannotBeUsed() throws DataAccessException, SQLException {
+        var pool = newPool(1, 0, 60000);
+        var conn = pool.getConnection();
+        conn.close();
+        conn.close(); // closing twice must not return it twice
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::getCatalog);
+        
+        var first = pool.getConnection();
+        assertThrows(DataAccessException.class, pool::getConnection);
+        first.close();
+    }
+    
+    @Test
+    public void testRetiresExpiredAndInvalidConnections() throws Exception {
+        var pool = newPool(1, 20, 60000);
+        pool.getConnection().close();
+        Thread.sleep(30);
+        pool.getConnection().close();
+        assertEquals(2, opened.size());
+        assertTrue(opened.get(0).closed);
+        
+        pool = newPool(1, 0, 0);
+        opened.clear();
+        pool.getConnection().close();
+        opened.get(0).valid = false;
+        pool.getConnection().close();
+        assertEquals(2, opened.size());
+        assertTrue(opened.get(0).closed);
+        assertEquals(1, pool.getStats().closed());
+    }
+    
+    @Test
+    public void testRollsBackUnfinishedTransaction() throws DataAccessException, SQLException {
+        var pool = newPool(1, 0, 60000);
+        try (var conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+        }
+        assertEquals(1, opened.get(0).rollbacks);
+        assertTrue(opened.get(0).autoCommit);
+    }
+}
@@ -4,17 +4,24 @@ import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPosition;
 import chess.InvalidMoveException;
+import com.google.gson.Gson;
 import dataaccess.inmemorydb.MemoryGameDAO;
 import dataaccess.mysqldb.MySQLGameDAO;
 import exception.BadRequestException;
+import exception.ConflictException;
 import exception.DataAccessException;
 import model.GameData;
+import model.GameFilter;
+import model.GameSummary;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.sql.SQLException;
 import java.util.Collection;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class GameDAOTests {
     
@@ -56,6 +63,25 @@ public class GameDAOTests {
         assertNull(gameDAO.getGame(-1));
     }
     
+    @Test
+    public void testGetGameReadsLegacyJson() throws DataAccessException, InvalidMoveException, SQLException {
+        assumeTrue(gameDAO instanceof MySQLGameDAO, "Only the MySQL DAO has rows saved before GameCodec");
+        int gameID = gameDAO.createGame("legacyGame");
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(8, 7), new ChessPosition(6, 6), null));
+        
+        // Store the game as JSON, the way rows were saved before the binary format
+        try (var conn = DatabaseManager.getConnection();
+             var statement = conn.prepareStatement("UPDATE Game SET game_data = ? WHERE game_id = ?")) {
+            statement.setString(1, new Gson().toJson(game));
+            statement.setInt(2, gameID);
+            statement.executeUpdate();
+        }
+        
+        assertEquals(game, gameDAO.getGame(gameID).game());
+    }
+    
     @Test
     public void testUpdateGameSuccess() throws DataAccessException, InvalidMoveException {
         int gameID = gameDAO.createGame("oldGame");
@@ -77,20 +103,112 @@ public class GameDAOTests {
         assertThrows(DataAccessException.class, () -> gameDAO.updateGame(updatedGame));
     }
     
+    @Test
+    public void testAddMoveSuccess() throws DataAccessException, InvalidMoveException {
+        int gameID = gameDAO.createGame("game");
+        GameData game = gameDAO.getGame(gameID);
+        
+        // knights out and back, enough moves to pass a snapshot in the move log
+        ChessMove[] moves = {
+                new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null),
+                new ChessMove(new ChessPosition(8, 7), new ChessPosition(6, 6), null),
+                new ChessMove(new ChessPosition(3, 6), new ChessPosition(1, 7), null),
+                new ChessMove(new ChessPosition(6, 6), new ChessPosition(8, 7), null)
+        };
+        for (int i = 0; i < 24; i++) {
+            game.game().makeMove(moves[i % moves.length]);
+            gameDAO.addMove(game, moves[i % moves.length]);
+            game = gameDAO.getGame(gameID);
+        }
+        ChessGame expectedGame = game.game();
+        expectedGame.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        gameDAO.addMove(game, new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        
+        ChessGame returnedGame = gameDAO.getGame(gameID).game();
+        assertEquals(expectedGame, returnedGame);
+        assertEquals(ChessGame.TeamColor.BLACK, returnedGame.getTeamTurn());
+    }
+    
+    @Test
+    public void testAddMoveFail() throws DataAccessException {
+        int gameID = gameDAO.createGame("game");
+        GameData game = gameDAO.getGame(gameID);
+        GameData missingGame = new GameData(-1, null, null, "missing", game.game());
+        ChessMove move = new ChessMove(new ChessPosition(2, 1), new ChessPosition(3, 1), null);
+        assertThrows(DataAccessException.class, () -> gameDAO.addMove(missingGame, move));
+    }
+    
+    @Test
+    public void testUpdateGameConflict() throws DataAccessException {
+        int gameID = gameDAO.createGame("game");
+        GameData firstRead = gameDAO.getGame(gameID);
+        GameData secondRead = gameDAO.getGame(gameID);
+        
+        gameDAO.updateGame(new GameData(gameID, "whiteUser", null, "game", firstRead.game(), firstRead.version()));
+        GameData staleUpdate = new GameData(gameID, null, "blackUser", "game", secondRead.game(), secondRead.version());
+        assertThrows(ConflictException.class, () -> gameDAO.updateGame(staleUpdate));
+        ChessMove move = new ChessMove(new ChessPosition(2, 1), new ChessPosition(3, 1), null);
+        assertThrows(ConflictException.class, () -> gameDAO.addMove(secondRead, move));
+        
+        GameData storedGame = gameDAO.getGame(gameID);
+        assertEquals("whiteUser", storedGame.whiteUsername());
+        assertNull(storedGame.blackUsername());
+    }
+    
     @Test
     public void testListGamesSuccess() throws DataAccessException {
         gameDAO.createGame("testGame1");
         gameDAO.createGame("testGame2");
         gameDAO.createGame("testGame3");
         gameDAO.createGame("testGame4");
-        Collection<GameData> games = gameDAO.listGames();
+        Collection<GameSummary> games = gameDAO.listGameSummaries(GameFilter.ALL, null, 10);
         assertNotNull(games);
         assertEquals(4, games.size());
     }
     
+    @Test
+    public void testListGameSummariesSuccess() throws DataAccessException {
+        int gameID = gameDAO.createGame("testGame1");
+        gameDAO.createGame("testGame2");
+        GameData game = gameDAO.getGame(gameID);
+        gameDAO.updateGame(new GameData(gameID, "whiteUser", null, "testGame1", game.game(), game.version()));
+        
+        Collection<GameSummary> summaries = gameDAO.listGameSummaries(GameFilter.ALL, null, 10);
+        assertEquals(2, summaries.size());
+        assertTrue(summaries.contains(new GameSummary(gameID, "whiteUser", null, "testGame1", false)));
+    }
+    
+    @Test
+    public void testListGameSummariesPagesAndFilters() throws DataAccessException {
+        int firstID = gameDAO.createGame("game1");
+        int secondID = gameDAO.createGame("game2");
+        int thirdID = gameDAO.createGame("game3");
+        GameData full = gameDAO.getGame(secondID);
+        gameDAO.updateGame(new GameData(secondID, "player", "other", "game2", full.game(), full.version()));
+        GameData finished = gameDAO.getGame(thirdID);
+        finished.game().setWinner(ChessGame.TeamColor.WHITE);
+        gameDAO.updateGame(new GameData(thirdID, null, "player", "game3", finished.game(), finished.version()));
+        
+        // pages in ID order
+        List<GameSummary> page = gameDAO.listGameSummaries(GameFilter.ALL, null, 2);
+        assertEquals(List.of(firstID, secondID), page.stream().map(GameSummary::gameID).toList());
+        page = gameDAO.listGameSummaries(GameFilter.ALL, secondID, 2);
+        assertEquals(List.of(thirdID), page.stream().map(GameSummary::gameID).toList());
+        
+        // filters
+        assertEquals(List.of(firstID, thirdID), gameDAO.listGameSummaries(new GameFilter(true, null, null), null, 10)
+                .stream().map(GameSummary::gameID).toList());
+        assertEquals(List.of(secondID, thirdID), gameDAO.listGameSummaries(new GameFilter(false, "player", null), null, 10)
+                .stream().map(GameSummary::gameID).toList());
+        assertEquals(List.of(thirdID), gameDAO.listGameSummaries(
+                new GameFilter(false, null, GameFilter.Status.FINISHED), null, 10).stream().map(GameSummary::gameID).toList());
+        assertEquals(List.of(firstID, secondID), gameDAO.listGameSummaries(
+                new GameFilter(false, null, GameFilter.Status.IN_PROGRESS), null, 10).stream().map(GameSummary::gameID).toList());
+    }
+    
     @Test
     public void testListGamesFail() throws DataAccessException {
-        Collection<GameData> games = gameDAO.listGames();
+        Collection<GameSummary> games = gameDAO.listGameSummaries(GameFilter.ALL, null, 10);
         assertTrue(games.isEmpty());
     }
     
@@ -101,7 +219,7 @@ public class GameDAOTests {
         gameDAO.createGame("testGame3");
         gameDAO.createGame("testGame4");
         gameDAO.clear();
-        Collection<GameData> games = gameDAO.listGames();
+        Collection<GameSummary> games = gameDAO.listGameSummaries(GameFilter.ALL, null, 10);
         assertNotNull(games);
         assertEquals(0, games.size());
     }
@@ -0,0 +1,138 @@
+package handler;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutboundQueuesTests {
+    
+    // Stand-in for a client's session whose sends only finish when the test says so
+    private static class SlowClient {
+        final List<String> started = new ArrayList<>();
+        final Deque<WriteCallback> pending = new ArrayDeque<>();
+        boolean open = true;
+        Integer closeCode = null;
+        
+        final RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sendString") && args.length == 2) {
+                        started.add((String) args[0]);
+                        pending.add((WriteCallback) args[1]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        
+        final Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> open;
+                    case "getRemote" -> remote;
+                    case "getRemoteAddress" -> null;
+                    case "close" -> {
+                        closeCode = (Integer) args[0];
+                        open = false;
+                        yield null;
+                    }
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        
+        // Let the send in progress finish, which starts the next one
+        void finishSend() {
+            pending.poll().writeSuccess();
+        }
+    }
+    
+    @Test
+    public void testSendsOneAtATimeInOrder() {
+        var queues = new OutboundQueues(new OutboundQueues.Config(8, OutboundQueues.OverflowPolicy.DISCONNECT));
+        var client = new SlowClient();
+        queues.send(client.session, "a", false);
+        queues.send(client.session, "b", false);
+        queues.send(client.session, "c", false);
+        
+        assertEquals(List.of("a"), client.started);
+        assertEquals(2, queues.getStats().queued());
+        client.finishSend();
+        client.finishSend();
+        client.finishSend();
+        assertEquals(List.of("a", "b", "c"), client.started);
+        assertEquals(0, queues.getStats().queued());
+        assertEquals(3, queues.getStats().sent());
+    }
+    
+    @Test
+    public void testSlowClientDoesNotHoldUpOthers() {
+        var queues = new OutboundQueues(new OutboundQueues.Config(8, OutboundQueues.OverflowPolicy.DISCONNECT));
+        var slow = new SlowClient();
+        var fast = new SlowClient();
+        queues.send(slow.session, "1", false);
+        queues.send(slow.session, "2", false);
+        queues.send(fast.session, "1", false);
+        
+        assertEquals(List.of("1"), fast.started);
+        assertEquals(1, queues.getStats().maxDepth());
+    }
+    
+    @Test
+    public void testDropsStaleGameStatesWhenFull() {
+        var queues = new OutboundQueues(new OutboundQueues.Config(3,
+                OutboundQueues.OverflowPolicy.DROP_STALE_LOAD_GAME));
+        var client = new SlowClient();
+        queues.send(client.session, "board 1", true);
+        queues.send(client.session, "board 2", true);
+        queues.send(client.session, "note", false);
+        queues.send(client.session, "board 3", true);
+        queues.send(client.session, "board 4", true);
+        
+        // board 1 was already being sent; board 2 and 3 were replaced by newer boards
+        while (!client.pending.isEmpty()) {
+            client.finishSend();
+        }
+        assertEquals(List.of("board 1", "note", "board 4"), client.started);
+        assertEquals(2, queues.getStats().dropped());
+        assertNull(client.closeCode);
+    }
+    
+    @Test
+    public void testKeepsNewestGameStateWhenNotificationArrivesOnFullQueue() {
+        var queues = new OutboundQueues(new OutboundQueues.Config(3,
+                OutboundQueues.OverflowPolicy.DROP_STALE_LOAD_GAME));
+        var client = new SlowClient();
+        for (int i = 1; i <= 4; i++) {
+            queues.send(client.session, "board " + i, true);
+        }
+        queues.send(client.session, "note", false);
+        
+        // board 2 and 3 made room for the note, but board 4 is still the client's latest game state
+        while (!client.pending.isEmpty()) {
+            client.finishSend();
+        }
+        assertEquals(List.of("board 1", "board 4", "note"), client.started);
+        assertEquals(2, queues.getStats().dropped());
+        assertNull(client.closeCode);
+    }
+    
+    @Test
+    public void testDisconnectsClientThatFallsBehind() {
+        var queues = new OutboundQueues(new OutboundQueues.Config(2, OutboundQueues.OverflowPolicy.DISCONNECT));
+        var client = new SlowClient();
+        for (int i = 0; i < 4; i++) {
+            queues.send(client.session, "board " + i, true);
+        }
+        
+        assertNotNull(client.closeCode);
+        assertEquals(1, queues.getStats().disconnected());
+        assertEquals(0, queues.getStats().sessions());
+    }
+}
@@ -0,0 +1,110 @@
+package handler;
+
+import chess.ChessGame;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionRegistryTests {
+    private SessionRegistry registry;
+    
+    @BeforeEach
+    public void setUp() {
+        registry = new SessionRegistry();
+    }
+    
+    // Stand-in for a WebSocket session that only knows whether it is open
+    private static Session session(boolean open) {
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> open;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+    
+    private static SessionRegistry.Membership player(int gameID, String username, ChessGame.TeamColor color) {
+        return new SessionRegistry.Membership(gameID, username, color, SessionRegistry.Role.PLAYER);
+    }
+    
+    private static SessionRegistry.Membership observer(int gameID, String username) {
+        return new SessionRegistry.Membership(gameID, username, null, SessionRegistry.Role.OBSERVER);
+    }
+    
+    @Test
+    public void testJoinAndLeave() {
+        Session white = session(true);
+        Session watcher = session(true);
+        registry.join(white, player(1, "white", ChessGame.TeamColor.WHITE));
+        registry.join(watcher, observer(1, "watcher"));
+        
+        assertEquals(Set.of(white, watcher), registry.sessions(1));
+        assertEquals(ChessGame.TeamColor.WHITE, registry.membership(white, 1).color());
+        assertEquals(SessionRegistry.Role.OBSERVER, registry.membership(watcher, 1).role());
+        
+        assertEquals("watcher", registry.leave(watcher, 1).username());
+        assertEquals(Set.of(white), registry.sessions(1));
+        assertNull(registry.membership(watcher, 1));
+        assertNull(registry.leave(watcher, 1));
+        assertEquals(1, registry.sessionCount());
+    }
+    
+    @Test
+    public void testRemoveTakesSessionOutOfEveryGame() {
+        Session session = session(true);
+        Session other = session(true);
+        registry.join(session, observer(1, "user"));
+        registry.join(session, observer(2, "user"));
+        registry.join(other, observer(2, "other"));
+        
+        assertEquals(2, registry.remove(session).size());
+        assertTrue(registry.sessions(1).isEmpty());
+        assertEquals(Set.of(other), registry.sessions(2));
+        assertTrue(registry.remove(session).isEmpty());
+        assertEquals(1, registry.sessionCount());
+    }
+    
+    @Test
+    public void testClosedSessionIsNotKept() {
+        Session closed = session(false);
+        registry.join(closed, observer(1, "user"));
+        
+        assertTrue(registry.sessions(1).isEmpty());
+        assertEquals(0, registry.sessionCount());
+    }
+    
+    @Test
+    public void testSessionClosedWhileJoiningIsNotKept() throws Exception {
+        // The close handler removes the session while another thread is still joining it to the game
+        for (int i = 0; i < 10000; i++) {
+            Session closing = session(false);
+            var barrier = new CyclicBarrier(2);
+            var closed = CompletableFuture.runAsync(() -> {
+                await(barrier);
+                registry.remove(closing);
+            });
+            await(barrier);
+            registry.join(closing, observer(1, "user"));
+            closed.get();
+            
+            assertTrue(registry.sessions(1).isEmpty(), "Closed session was left in the game");
+            assertEquals(0, registry.sessionCount());
+        }
+    }
+    
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import dataaccess.GameDAO;
+import dataaccess.inmemorydb.MemoryAuthDAO;
+import dataaccess.inmemorydb.MemoryGameDAO;
+import exception.BadRequestException;
+import exception.DataAccessException;
+import model.GameData;
+import model.request.JoinGameRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameActorsTests {
+    private MemoryAuthDAO authDAO;
+    private MemoryGameDAO gameDAO;
+    private GameActors gameActors;
+    
+    @BeforeEach
+    public void setUp() {
+        authDAO = MemoryAuthDAO.getInstance();
+        gameDAO = MemoryGameDAO.getInstance();
+        authDAO.clear();
+        gameDAO.clear();
+        gameActors = new GameActors(gameDAO);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        gameActors.close();
+    }
+    
+    @Test
+    public void testTasksForOneGameRunInOrder() throws Exception {
+        // Not synchronized: only one task of the game runs at a time
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int task = i;
+            gameActors.submit(1, actor -> order.add(task));
+        }
+        runOnActor(1, actor -> null);
+        
+        assertEquals(1000, order.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+    
+    @Test
+    public void testMovesAreWrittenBehind() throws Exception {
+        int gameID = gameDAO.createGame("game");
+        gameDAO.updateGame(new GameData(gameID, "white", "black", "game", gameDAO.getGame(gameID).game()));
+        
+        GameData afterMove = runOnActor(gameID, actor -> actor.makeMove("white", move("e2", "e4")));
+        assertEquals(ChessGame.TeamColor.BLACK, afterMove.game().getTeamTurn());
+        
+        // Loading the game again waits for the write
+        runOnActor(gameID, actor -> {
+            actor.reload();
+            return actor.game();
+        });
+        assertEquals(ChessGame.TeamColor.BLACK, gameDAO.getGame(gameID).game().getTeamTurn());
+        assertEquals(afterMove.game(), gameDAO.getGame(gameID).game());
+    }
+    
+    @Test
+    public void testInvalidMoveIsNotApplied() throws Exception {
+        int gameID = gameDAO.createGame("game");
+        gameDAO.updateGame(new GameData(gameID, "white", "black", "game", gameDAO.getGame(gameID).game()));
+        
+        GameData rejected = runOnActor(gameID, actor -> {
+            try {
+                actor.makeMove("black", move("e7", "e5"));
+                return null;
+            } catch (BadRequestException e) {
+                return actor.game();
+            }
+        });
+        assertNotNull(rejected);
+        assertEquals(ChessGame.TeamColor.WHITE, rejected.game().getTeamTurn());
+    }
+    
+    @Test
+    public void testWriteBuildsOnPlayerWhoJoinedElsewhere() throws Exception {
+        int gameID = gameDAO.createGame("game");
+        gameDAO.updateGame(new GameData(gameID, "white", null, "game", gameDAO.getGame(gameID).game()));
+        runOnActor(gameID, GameActor::game);
+        
+        // Black joins through the service while the actor holds the game
+        String blackToken = authDAO.createAuth("black").authToken();
+        new GameService(authDAO, gameDAO).joinGame(
+                new JoinGameRequest(blackToken, ChessGame.TeamColor.BLACK, gameID));
+        
+        runOnActor(gameID, actor -> actor.makeMove("white", move("e2", "e4")));
+        runOnActor(gameID, actor -> {
+            actor.reload();
+            return actor.game();
+        });
+        
+        GameData stored = gameDAO.getGame(gameID);
+        assertEquals("black", stored.blackUsername());
+        assertEquals(ChessGame.TeamColor.BLACK, stored.game().getTeamTurn());
+    }
+    
+    @Test
+    public void testFailedWriteShowsSavedGame() throws Exception {
+        int gameID = gameDAO.createGame("game");
+        gameDAO.updateGame(new GameData(gameID, "white", "black", "game", gameDAO.getGame(gameID).game()));
+        
+        // A database that reads but can't log moves
+        gameActors.close();
+        gameActors = new GameActors(beforeAddMove(() -> {
+            throw new DataAccessException("Database is down");
+        }));
+        var saved = new CompletableFuture<GameData>();
+        gameActors.setWriteFailureListener(saved::complete);
+        
+        runOnActor(gameID, actor -> actor.makeMove("white", move("e2", "e4")));
+        
+        assertEquals(ChessGame.TeamColor.WHITE, saved.get(10, TimeUnit.SECONDS).game().getTeamTurn(),
+                "Players were not shown the game without the unsaved move");
+        assertEquals(ChessGame.TeamColor.WHITE, runOnActor(gameID, GameActor::game).game().getTeamTurn());
+    }
+    
+    @Test
+    public void testClearWaitsForPendingWrites() throws Exception {
+        int gameID = gameDAO.createGame("game");
+        gameDAO.updateGame(new GameData(gameID, "white", "black", "game", gameDAO.getGame(gameID).game()));
+        
+        // A database slow enough to still be logging the move when the actors are cleared
+        gameActors.close();
+        gameActors = new GameActors(beforeAddMove(() -> Thread.sleep(200)));
+        runOnActor(gameID, actor -> actor.makeMove("white", move("e2", "e4")));
+        
+        gameActors.clear();
+        assertEquals(ChessGame.TeamColor.BLACK, gameDAO.getGame(gameID).game().getTeamTurn(),
+                "Actors were cleared before their move was written");
+    }
+    
+    @Test
+    public void testActorOfMissingGameIsDropped() throws Exception {
+        assertThrows(ExecutionException.class, () -> runOnActor(999, GameActor::game));
+        
+        // the actor goes once the failed task finishes, just after the caller hears about it
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (gameActors.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, gameActors.size(), "Actor of a game that doesn't exist was kept");
+    }
+    
+    @Test
+    public void testIdleActorsAreRetired() throws Exception {
+        runOnActor(1, actor -> null);
+        assertEquals(1, gameActors.size());
+        
+        gameActors.retireIdle();
+        assertEquals(1, gameActors.size(), "Recently used actor was retired");
+        
+        gameActors.clear();
+        assertEquals(0, gameActors.size());
+    }
+    
+    private interface DaoCall {
+        void run() throws Exception;
+    }
+    
+    // The memory DAO, with a call made before each move is logged
+    private GameDAO beforeAddMove(DaoCall call) {
+        return (GameDAO) Proxy.newProxyInstance(GameDAO.class.getClassLoader(), new Class<?>[]{GameDAO.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("addMove")) call.run();
+                    try {
+                        return method.invoke(gameDAO, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+    
+    private interface ActorCall<T> {
+        T call(GameActor actor) throws Exception;
+    }
+    
+    // Runs a call on the game's actor and waits for its result
+    private <T> T runOnActor(int gameID, ActorCall<T> call) throws Exception {
+        var result = new CompletableFuture<T>();
+        gameActors.submit(gameID, actor -> {
+            try {
+                result.complete(call.call(actor));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.get(10, TimeUnit.SECONDS);
+    }
+    
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(position(from), position(to), null);
+    }
+    
+    private static ChessPosition position(String square) {
+        return new ChessPosition(square.charAt(1) - '0', square.charAt(0) - 'a' + 1);
+    }
+}
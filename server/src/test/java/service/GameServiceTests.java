@@ -8,6 +8,7 @@ import exception.BadRequestException;
 import exception.DataAccessException;
 import exception.UnauthorizedException;
 import model.GameData;
+import model.GameFilter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -15,9 +16,11 @@ import model.request.CreateGameRequest;
 import model.request.JoinGameRequest;
 import model.request.ListGamesRequest;
 import model.response.CreateGameResponse;
-import model.response.ListGamesResponse;
+import model.response.ListGameSummariesResponse;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -77,23 +80,35 @@ public class GameServiceTests {
         }
         
         @Test
-        public void testListGamesSuccess() throws DataAccessException {
-            ListGamesResponse response = gameService.listGames(new ListGamesRequest(authToken));
-            assertNotNull(response);
-            assertNotNull(response.games());
+        public void testListGameSummariesSuccess() throws DataAccessException {
+            gameDAO.createGame("game1");
+            gameDAO.createGame("game2");
+            int lastID = gameDAO.createGame("game3");
+            ListGameSummariesResponse response = gameService.listGameSummaries(new ListGamesRequest(authToken));
+            assertEquals(3, response.games().size());
+            assertNull(response.nextAfter());
             
-            // Test that a Collection of ChessGames is returned
-            assertInstanceOf(Collection.class, response.games());
-            for (Object game : response.games()) {
-                assertInstanceOf(ChessGame.class, game);
-            }
+            // two pages
+            response = gameService.listGameSummaries(new ListGamesRequest(authToken, null, 2, GameFilter.ALL));
+            assertEquals(2, response.games().size());
+            assertNotNull(response.nextAfter());
+            response = gameService.listGameSummaries(
+                    new ListGamesRequest(authToken, response.nextAfter(), 2, GameFilter.ALL));
+            assertEquals(1, response.games().size());
+            assertEquals(lastID, response.games().iterator().next().gameID());
+            assertNull(response.nextAfter());
+            
+            assertThrows(BadRequestException.class, () -> gameService.listGameSummaries(
+                    new ListGamesRequest(authToken, null, 0, GameFilter.ALL)));
+            assertThrows(UnauthorizedException.class,
+                    () -> gameService.listGameSummaries(new ListGamesRequest("badToken")));
         }
         
         @Test
         public void testListGamesFailure() {
             String badAuthToken = "badToken";
             assertThrows(UnauthorizedException.class,
-                    () -> gameService.listGames(new ListGamesRequest(badAuthToken)));
+                    () -> gameService.listGameSummaries(new ListGamesRequest(badAuthToken)));
         }
     }
     
@@ -150,6 +165,36 @@ public class GameServiceTests {
             JoinGameRequest nonExistentGameRequest = new JoinGameRequest(authToken, ChessGame.TeamColor.WHITE, nonExistentGameID);
             assertThrows(BadRequestException.class, () -> gameService.joinGame(nonExistentGameRequest));
         }
+        
+        @Test
+        public void testConcurrentJoinsTakeSeatOnce() throws Exception {
+            // Many users race for the same seat; exactly one gets it
+            int players = 16;
+            var tokens = new ArrayList<String>();
+            for (int i = 0; i < players; i++) {
+                tokens.add(authDAO.createAuth("player" + i).authToken());
+            }
+            var seated = new AtomicInteger();
+            var taken = new AtomicInteger();
+            try (var executor = Executors.newFixedThreadPool(4)) {
+                for (String token : tokens) {
+                    executor.submit(() -> {
+                        try {
+                            // each request uses its own service, as each handler does
+                            new GameService(authDAO, gameDAO).joinGame(
+                                    new JoinGameRequest(token, ChessGame.TeamColor.WHITE, gameID));
+                            seated.incrementAndGet();
+                        } catch (AlreadyTakenException e) {
+                            taken.incrementAndGet();
+                        }
+                        return null;
+                    });
+                }
+            }
+            assertEquals(1, seated.get());
+            assertEquals(players - 1, taken.get());
+            assertNotNull(gameDAO.getGame(gameID).whiteUsername());
+        }
     }
     
     @Nested
@@ -0,0 +1,194 @@
+package chess;
+
+/**
+ * Helpers for working with 64-bit bitboards, where bit {@code (row - 1) * 8 + (col - 1)}
+ * stands for a square (a1 = bit 0, h8 = bit 63)
+ */
+public final class Bitboards {
+
+    public static final int SQUARES = 64;
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+
+    private static final int[][] KNIGHT_STEPS = {
+            {2, 1}, {2, -1}, {-2, 1}, {-2, -1},
+            {1, 2}, {1, -2}, {-1, 2}, {-1, -2}
+    };
+    private static final int[][] KING_STEPS = {
+            {0, 1}, {0, -1}, {-1, 0}, {1, 0},
+            {1, 1}, {1, -1}, {-1, 1}, {-1, -1}
+    };
+    static final int[][] ROOK_DIRECTIONS = {{0, 1}, {0, -1}, {-1, 0}, {1, 0}};
+    static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private static final long[] KNIGHT_ATTACKS = new long[SQUARES];
+    private static final long[] KING_ATTACKS = new long[SQUARES];
+    private static final long[][] PAWN_ATTACKS = new long[2][SQUARES];
+    private static final long[][] BETWEEN = new long[SQUARES][SQUARES];
+    private static final long[][] LINE = new long[SQUARES][SQUARES];
+
+    static {
+        for (int square = 0; square < SQUARES; square++) {
+            int row = rowOf(square);
+            int col = columnOf(square);
+            KNIGHT_ATTACKS[square] = stepTargets(row, col, KNIGHT_STEPS);
+            KING_ATTACKS[square] = stepTargets(row, col, KING_STEPS);
+            PAWN_ATTACKS[0][square] = stepTargets(row, col, new int[][]{{1, -1}, {1, 1}});
+            PAWN_ATTACKS[1][square] = stepTargets(row, col, new int[][]{{-1, -1}, {-1, 1}});
+        }
+        // Squares between and lines through every pair of aligned squares
+        for (int[][] directions : new int[][][]{ROOK_DIRECTIONS, BISHOP_DIRECTIONS}) {
+            for (int[] direction : directions) {
+                for (int from = 0; from < SQUARES; from++) {
+                    long line = ray(from, direction[0], direction[1]) | ray(from, -direction[0], -direction[1]) | bit(from);
+                    long between = 0;
+                    int row = rowOf(from) + direction[0];
+                    int col = columnOf(from) + direction[1];
+                    while (isInbounds(row, col)) {
+                        int to = squareOf(row, col);
+                        BETWEEN[from][to] = between;
+                        LINE[from][to] = line;
+                        between |= bit(to);
+                        row += direction[0];
+                        col += direction[1];
+                    }
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * @return square index (0-63) of the given position
+     */
+    public static int squareOf(ChessPosition position) {
+        return squareOf(position.getRow(), position.getColumn());
+    }
+
+    /**
+     * @return square index (0-63) of the given 1-indexed row and column
+     */
+    public static int squareOf(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    /**
+     * @return position of the given square index (0-63)
+     */
+    public static ChessPosition positionOf(int square) {
+        return ChessPosition.of(square);
+    }
+
+    // 1-indexed row of a square
+    public static int rowOf(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    // 1-indexed column of a square
+    public static int columnOf(int square) {
+        return (square & 7) + 1;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * @return every square of the given 1-indexed row
+     */
+    public static long rowMask(int row) {
+        return 0xFFL << (row - 1) * 8;
+    }
+
+    /**
+     * Index of a piece's bitboard: white pieces take 0-5 and black pieces 6-11, ordered by {@link ChessPiece.PieceType}
+     */
+    public static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return colorIndex(color) * 6 + type.ordinal();
+    }
+
+    public static int colorIndex(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? 0 : 1;
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return squares a pawn of the given color standing on the square attacks
+     */
+    public static long pawnAttacks(ChessGame.TeamColor color, int square) {
+        return PAWN_ATTACKS[colorIndex(color)][square];
+    }
+
+    /**
+     * @return squares a rook on the square attacks, stopping at (and including) the first occupied square each way
+     */
+    public static long rookAttacks(int square, long occupancy) {
+        return MagicBitboards.rookAttacks(square, occupancy);
+    }
+
+    /**
+     * @return squares a bishop on the square attacks, stopping at (and including) the first occupied square each way
+     */
+    public static long bishopAttacks(int square, long occupancy) {
+        return MagicBitboards.bishopAttacks(square, occupancy);
+    }
+
+    /**
+     * @return squares strictly between two squares on a shared rank, file or diagonal; empty if not aligned
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * @return the whole rank, file or diagonal through two squares; empty if not aligned
+     */
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    // Walks each ray square by square; slow, but the reference the magic bitboard tables are built from
+    static long slidingAttacks(int square, long occupancy, int[][] directions) {
+        long attacks = 0;
+        for (int[] direction : directions) {
+            int row = rowOf(square) + direction[0];
+            int col = columnOf(square) + direction[1];
+            while (isInbounds(row, col)) {
+                long target = bit(squareOf(row, col));
+                attacks |= target;
+                if ((occupancy & target) != 0) break;
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    // Every square from the given square (exclusive) to the edge of the board in one direction
+    private static long ray(int square, int rowDirection, int colDirection) {
+        return slidingAttacks(square, 0, new int[][]{{rowDirection, colDirection}});
+    }
+
+    private static long stepTargets(int row, int col, int[][] steps) {
+        long targets = 0;
+        for (int[] step : steps) {
+            if (isInbounds(row + step[0], col + step[1])) {
+                targets |= bit(squareOf(row + step[0], col + step[1]));
+            }
+        }
+        return targets;
+    }
+
+    private static boolean isInbounds(int row, int col) {
+        return 1 <= row && row <= 8 && 1 <= col && col <= 8;
+    }
+}
@@ -11,17 +11,33 @@ import java.util.Arrays;
 public class ChessBoard {
     private final ChessPiece[][] board = new ChessPiece[8][8];
     
+    // Bitboard mirror of the board array: one bitboard per piece kind plus occupancy per color.
+    // Not serialized, so it is rebuilt from the array the first time it is needed.
+    private transient long[] pieceBitboards = new long[12];
+    private transient long[] colorBitboards = new long[2];
+    // Zobrist key of the piece placement, kept in step with the bitboards
+    private transient long zobristKey;
+    private transient boolean bitboardsSynced = false;
+    // Bumped on every change to the board, so callers can tell whether derived data is stale
+    private transient int modificationCount = 0;
+    
     public ChessBoard() {
     }
     
-    // Copy constructor
+    // Copy constructor; pieces are copied too since their hasNotMoved flag changes as they move
     public ChessBoard(ChessBoard otherBoard) {
-        for (int row = 1; row < 9; row++) {
-            for (int col = 1; col < 9; col++) {
-                var currPosition = new ChessPosition(row, col);
-                this.addPiece(currPosition, otherBoard.getPiece(currPosition));
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                var piece = otherBoard.board[row][col];
+                board[row][col] = piece == null ? null : new ChessPiece(piece);
             }
         }
+        if (otherBoard.bitboardsSynced) {
+            pieceBitboards = otherBoard.pieceBitboards.clone();
+            colorBitboards = otherBoard.colorBitboards.clone();
+            zobristKey = otherBoard.zobristKey;
+            bitboardsSynced = true;
+        }
     }
     
     /**
@@ -35,7 +51,7 @@ public class ChessBoard {
         for (int row = 8; row >= 1; row--) { // Start from the top (row 8) and go down to row 1
             sb.append(row).append(" | "); // Row number
             for (int col = 1; col <= 8; col++) {
-                ChessPiece piece = getPiece(new ChessPosition(row, col));
+                ChessPiece piece = getPiece(ChessPosition.of(row, col));
                 if (piece == null) {
                     sb.append("- "); // No piece at this position
                 } else {
@@ -58,11 +74,22 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
+        clearPosition(position);
         board[8 - position.getRow()][position.getColumn() - 1] = piece;
+        modificationCount++;
+        if (piece != null && bitboardsSynced) {
+            setBit(piece, Bitboards.squareOf(position));
+        }
     }
     
     public void clearPosition(ChessPosition position) {
+        var piece = board[8 - position.getRow()][position.getColumn() - 1];
+        if (piece == null) return;
         board[8 - position.getRow()][position.getColumn() - 1] = null;
+        modificationCount++;
+        if (bitboardsSynced) {
+            clearBit(piece, Bitboards.squareOf(position));
+        }
     }
     
     /**
@@ -76,10 +103,86 @@ public class ChessBoard {
         return board[8 - position.getRow()][position.getColumn() - 1];
     }
     
+    /**
+     * @param square square index (0-63, see {@link Bitboards})
+     * @return Either the piece on the square, or null if the square is empty
+     */
+    public ChessPiece getPiece(int square) {
+        return board[7 - (square >>> 3)][square & 7];
+    }
+    
     public boolean squareIsEmpty(ChessPosition position) {
         return this.getPiece(position) == null;
     }
     
+    /**
+     * @return bitboard of every square holding a piece of the given color and type
+     */
+    public long getPieceBitboard(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        syncBitboards();
+        return pieceBitboards[Bitboards.pieceIndex(color, type)];
+    }
+    
+    /**
+     * @return bitboard of every square holding a piece of the given color
+     */
+    public long getOccupancy(ChessGame.TeamColor color) {
+        syncBitboards();
+        return colorBitboards[Bitboards.colorIndex(color)];
+    }
+    
+    /**
+     * @return bitboard of every occupied square
+     */
+    public long getOccupancy() {
+        syncBitboards();
+        return colorBitboards[0] | colorBitboards[1];
+    }
+    
+    /**
+     * @return Zobrist key of the piece placement; boards with equal pieces on equal squares have equal keys
+     */
+    public long getZobristKey() {
+        syncBitboards();
+        return zobristKey;
+    }
+    
+    /**
+     * @return counter that changes whenever a piece is added to or removed from the board
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+    
+    // Rebuild the bitboards from the board array if they are not already in sync (e.g. after deserialization)
+    private void syncBitboards() {
+        if (bitboardsSynced) return;
+        if (pieceBitboards == null) {
+            pieceBitboards = new long[12];
+            colorBitboards = new long[2];
+        }
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(colorBitboards, 0L);
+        zobristKey = 0;
+        for (int square = 0; square < Bitboards.SQUARES; square++) {
+            var piece = board[8 - Bitboards.rowOf(square)][Bitboards.columnOf(square) - 1];
+            if (piece != null) setBit(piece, square);
+        }
+        bitboardsSynced = true;
+    }
+    
+    private void setBit(ChessPiece piece, int square) {
+        pieceBitboards[Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType())] |= Bitboards.bit(square);
+        colorBitboards[Bitboards.colorIndex(piece.getTeamColor())] |= Bitboards.bit(square);
+        zobristKey ^= Zobrist.piece(piece, square);
+    }
+    
+    private void clearBit(ChessPiece piece, int square) {
+        pieceBitboards[Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType())] &= ~Bitboards.bit(square);
+        colorBitboards[Bitboards.colorIndex(piece.getTeamColor())] &= ~Bitboards.bit(square);
+        zobristKey ^= Zobrist.piece(piece, square);
+    }
+    
     /**
      * Sets the board to the default starting board
      * (How the game of chess normally starts)
@@ -88,36 +191,36 @@ public class ChessBoard {
         // Clear the board
         for (int row = 1; row <= 8; row++) {
             for (int col = 1; col <= 8; col++) {
-                clearPosition(new ChessPosition(row, col));
+                clearPosition(ChessPosition.of(row, col));
             }
         }
         // Set up white pieces
         for (int col = 1; col <= 8; col++) {
-            this.addPiece(new ChessPosition(2, col), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN)); // White pawns
+            this.addPiece(ChessPosition.of(2, col), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN)); // White pawns
         }
-        this.addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
-        this.addPiece(new ChessPosition(1, 8), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
-        this.addPiece(new ChessPosition(1, 2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        this.addPiece(new ChessPosition(1, 7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        this.addPiece(new ChessPosition(1, 3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        this.addPiece(new ChessPosition(1, 6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        this.addPiece(new ChessPosition(1, 4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
-        this.addPiece(new ChessPosition(1, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        this.addPiece(ChessPosition.of(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        this.addPiece(ChessPosition.of(1, 8), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        this.addPiece(ChessPosition.of(1, 2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        this.addPiece(ChessPosition.of(1, 7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        this.addPiece(ChessPosition.of(1, 3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        this.addPiece(ChessPosition.of(1, 6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        this.addPiece(ChessPosition.of(1, 4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        this.addPiece(ChessPosition.of(1, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
         
         
         // Set up black pieces
         for (int col = 1; col <= 8; col++) {
-            this.addPiece(new ChessPosition(7, col), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            this.addPiece(ChessPosition.of(7, col), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
             // Black pawns
         }
-        this.addPiece(new ChessPosition(8, 1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
-        this.addPiece(new ChessPosition(8, 8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
-        this.addPiece(new ChessPosition(8, 2), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        this.addPiece(new ChessPosition(8, 7), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        this.addPiece(new ChessPosition(8, 3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        this.addPiece(new ChessPosition(8, 6), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        this.addPiece(new ChessPosition(8, 4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
-        this.addPiece(new ChessPosition(8, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        this.addPiece(ChessPosition.of(8, 1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        this.addPiece(ChessPosition.of(8, 8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        this.addPiece(ChessPosition.of(8, 2), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        this.addPiece(ChessPosition.of(8, 7), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        this.addPiece(ChessPosition.of(8, 3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        this.addPiece(ChessPosition.of(8, 6), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        this.addPiece(ChessPosition.of(8, 4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        this.addPiece(ChessPosition.of(8, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
         
     }
     
@@ -126,11 +229,12 @@ public class ChessBoard {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ChessBoard that = (ChessBoard) o;
-        return Arrays.deepEquals(board, that.board);
+        // the piece bitboards hold exactly the color and type of every square
+        return getZobristKey() == that.getZobristKey() && Arrays.equals(pieceBitboards, that.pieceBitboards);
     }
     
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(board);
+        return Long.hashCode(getZobristKey());
     }
 }
@@ -1,7 +1,12 @@
 package chess;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * For a class that can manage a chess game, making moves on a board
@@ -14,6 +19,17 @@ public class ChessGame {
     private TeamColor teamColor;
     private ChessMove lastMove;
     private TeamColor winner;
+    // Moves since the last capture or pawn move, and the number of the current full move (starts at 1, goes up after Black moves)
+    private int halfmoveClock = 0;
+    private int fullmoveNumber = 1;
+    // Undo records of moves made through makeMove, most recent first (not serialized)
+    private transient Deque<MoveUndo> history = new ArrayDeque<>();
+    // Check and pin analysis of the most recently analyzed position (not serialized)
+    private transient CheckInfo checkInfo;
+    // Valid moves of each team in the most recently analyzed position, by Bitboards.colorIndex (not serialized)
+    private transient MoveList[] moveLists;
+    // Scratch space that move lists are generated into before being copied out at their size (not serialized)
+    private transient int[] moveBuffer;
     
     public ChessGame() {
         ChessBoard startingBoard = new ChessBoard();
@@ -27,12 +43,232 @@ public class ChessGame {
         board = startingBoard;
     }
     
+    /**
+     * Copies a game's position so the copy can be searched on another thread. Move history
+     * is not copied, so moves made before the copy can't be taken back on it.
+     *
+     * @param otherGame game to copy
+     */
+    public ChessGame(ChessGame otherGame) {
+        board = new ChessBoard(otherGame.board);
+        teamColor = otherGame.teamColor;
+        lastMove = otherGame.lastMove;
+        winner = otherGame.winner;
+        halfmoveClock = otherGame.halfmoveClock;
+        fullmoveNumber = otherGame.fullmoveNumber;
+    }
+    
+    /**
+     * Builds a game from a position in Forsyth-Edwards Notation. Castling rights become the
+     * hasNotMoved flags of the kings and rooks, and the en passant square becomes the last move.
+     * The move counters are optional and default to 0 and 1.
+     *
+     * @param fen position such as "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"
+     * @return game set up in that position
+     * @throws IllegalArgumentException if the FEN can't be read
+     */
+    public static ChessGame fromFen(String fen) {
+        var fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("FEN needs placement, side, castling and en passant fields: " + fen);
+        }
+        
+        // Piece placement, from row 8 down to row 1
+        var board = new ChessBoard();
+        var rows = fields[0].split("/");
+        if (rows.length != 8) throw new IllegalArgumentException("FEN placement needs 8 rows: " + fen);
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int col = 1;
+            for (char c : rows[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    col += c - '0';
+                    continue;
+                }
+                var type = FEN_PIECE_TYPES.get(Character.toLowerCase(c));
+                if (type == null || col > 8) throw new IllegalArgumentException("Bad FEN row: " + rows[i]);
+                var color = Character.isUpperCase(c) ? TeamColor.WHITE : TeamColor.BLACK;
+                board.addPiece(ChessPosition.of(row, col++), new ChessPiece(color, type));
+            }
+            if (col != 9) throw new IllegalArgumentException("Bad FEN row: " + rows[i]);
+        }
+        
+        var game = new ChessGame(board);
+        switch (fields[1]) {
+            case "w" -> game.setTeamTurn(TeamColor.WHITE);
+            case "b" -> game.setTeamTurn(TeamColor.BLACK);
+            default -> throw new IllegalArgumentException("Bad FEN side to move: " + fields[1]);
+        }
+        
+        // Castling rights
+        int rights = 0;
+        if (!fields[2].equals("-")) {
+            for (char c : fields[2].toCharArray()) {
+                int index = FEN_CASTLING.indexOf(c);
+                if (index < 0) throw new IllegalArgumentException("Bad FEN castling rights: " + fields[2]);
+                rights |= 1 << index;
+            }
+        }
+        game.setCastlingRights(rights);
+        
+        // En passant target square, which must be on the row the side to move would capture onto
+        if (!fields[3].equals("-")) {
+            int col = fields[3].charAt(0) - 'a' + 1;
+            int row = fields[3].length() == 2 ? fields[3].charAt(1) - '0' : 0;
+            if (row != (game.teamColor == TeamColor.WHITE ? 6 : 3) || col < 1 || col > 8) {
+                throw new IllegalArgumentException("Bad FEN en passant square: " + fields[3]);
+            }
+            game.setEnPassantFile(col);
+        }
+        
+        // Move counters
+        try {
+            if (fields.length > 4) game.halfmoveClock = Integer.parseInt(fields[4]);
+            if (fields.length > 5) game.fullmoveNumber = Integer.parseInt(fields[5]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad FEN move counters: " + fen);
+        }
+        return game;
+    }
+    
+    /**
+     * Writes the game's position in Forsyth-Edwards Notation. Castling rights come from the
+     * hasNotMoved flags of the kings and rooks, and the en passant square from the last move.
+     *
+     * @return position such as "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"
+     */
+    public String toFen() {
+        var fen = new StringBuilder();
+        
+        // Piece placement, from row 8 down to row 1
+        for (int row = 8; row >= 1; row--) {
+            int emptySquares = 0;
+            for (int col = 1; col <= 8; col++) {
+                var piece = board.getPiece(ChessPosition.of(row, col));
+                if (piece == null) {
+                    emptySquares++;
+                    continue;
+                }
+                if (emptySquares > 0) fen.append(emptySquares);
+                emptySquares = 0;
+                char c = FEN_PIECE_CHARS.get(piece.getPieceType());
+                fen.append(piece.getTeamColor() == TeamColor.WHITE ? Character.toUpperCase(c) : c);
+            }
+            if (emptySquares > 0) fen.append(emptySquares);
+            if (row > 1) fen.append('/');
+        }
+        
+        fen.append(teamColor == TeamColor.BLACK ? " b " : " w ");
+        
+        // Castling rights
+        int rights = getCastlingRights();
+        if (rights == 0) fen.append('-');
+        for (int i = 0; i < FEN_CASTLING.length(); i++) {
+            if ((rights & 1 << i) != 0) fen.append(FEN_CASTLING.charAt(i));
+        }
+        
+        // En passant target square, behind the pawn that just moved two squares
+        int file = getDoublePushFile();
+        if (file == 0) {
+            fen.append(" -");
+        } else {
+            fen.append(' ').append((char) ('a' + file - 1)).append(teamColor == TeamColor.BLACK ? 3 : 6);
+        }
+        
+        return fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber).toString();
+    }
+    
+    private static final Map<Character, ChessPiece.PieceType> FEN_PIECE_TYPES = Map.of(
+            'p', ChessPiece.PieceType.PAWN,
+            'n', ChessPiece.PieceType.KNIGHT,
+            'b', ChessPiece.PieceType.BISHOP,
+            'r', ChessPiece.PieceType.ROOK,
+            'q', ChessPiece.PieceType.QUEEN,
+            'k', ChessPiece.PieceType.KING);
+    private static final Map<ChessPiece.PieceType, Character> FEN_PIECE_CHARS = Map.of(
+            ChessPiece.PieceType.PAWN, 'p',
+            ChessPiece.PieceType.KNIGHT, 'n',
+            ChessPiece.PieceType.BISHOP, 'b',
+            ChessPiece.PieceType.ROOK, 'r',
+            ChessPiece.PieceType.QUEEN, 'q',
+            ChessPiece.PieceType.KING, 'k');
+    // FEN castling letters, in the order of the Zobrist castling right bits
+    private static final String FEN_CASTLING = "KQkq";
+    
+    /**
+     * Sets castling rights by marking kings and rooks as moved. Rights can only be taken
+     * away this way; a right whose king and rook have already moved is not given back.
+     *
+     * @param rights castling right bits (Zobrist.WHITE_KINGSIDE etc.) that should remain
+     */
+    void setCastlingRights(int rights) {
+        clearCastlingRight(TeamColor.WHITE, 8, (rights & Zobrist.WHITE_KINGSIDE) != 0);
+        clearCastlingRight(TeamColor.WHITE, 1, (rights & Zobrist.WHITE_QUEENSIDE) != 0);
+        clearCastlingRight(TeamColor.BLACK, 8, (rights & Zobrist.BLACK_KINGSIDE) != 0);
+        clearCastlingRight(TeamColor.BLACK, 1, (rights & Zobrist.BLACK_QUEENSIDE) != 0);
+    }
+    
+    /**
+     * Makes a pawn of the side not to move appear to have just moved two squares, so it can be captured en passant
+     *
+     * @param file column (1-8) of the pawn, or 0 for none
+     */
+    void setEnPassantFile(int file) {
+        if (file == 0) {
+            lastMove = null;
+            return;
+        }
+        int fromRow = teamColor == TeamColor.WHITE ? 7 : 2;
+        int toRow = teamColor == TeamColor.WHITE ? 5 : 4;
+        lastMove = ChessMove.of(ChessPosition.of(fromRow, file), ChessPosition.of(toRow, file), null);
+    }
+    
+    ChessMove getLastMove() {
+        return lastMove;
+    }
+    
+    // Restores the exact last move, which decides en passant, when reading a saved game
+    void setLastMove(ChessMove lastMove) {
+        this.lastMove = lastMove;
+        moveLists = null;
+    }
+    
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+    
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+    
+    void setMoveCounters(int halfmoveClock, int fullmoveNumber) {
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+    }
+    
+    // Mark a home-square rook as moved if its castling right is missing, and the king if both are missing
+    private void clearCastlingRight(TeamColor color, int rookColumn, boolean hasRight) {
+        if (hasRight) return;
+        int row = color == TeamColor.WHITE ? 1 : 8;
+        var rook = board.getPiece(ChessPosition.of(row, rookColumn));
+        if (rook != null && rook.getPieceType() == ChessPiece.PieceType.ROOK) rook.setHasNotMoved(false);
+        var otherRook = board.getPiece(ChessPosition.of(row, rookColumn == 8 ? 1 : 8));
+        var king = board.getPiece(ChessPosition.of(row, 5));
+        if (king != null && king.getPieceType() == ChessPiece.PieceType.KING
+                && (otherRook == null || otherRook.getPieceType() != ChessPiece.PieceType.ROOK
+                || !otherRook.hasNotMoved())) {
+            king.setHasNotMoved(false);
+        }
+    }
+    
     public ChessBoard getBoard() {
         return board;
     }
     
     public void setBoard(ChessBoard board) {
         this.board = board;
+        getHistory().clear(); // moves can't be taken back on a different board
+        moveLists = null;
     }
     
     public TeamColor getTeamTurn() {
@@ -57,6 +293,28 @@ public class ChessGame {
         DRAW
     }
     
+    /**
+     * Everything needed to take back a move that was applied in place
+     *
+     * @param move                   the move that was applied
+     * @param movedPiece             the piece that moved (the pawn, if the move was a promotion)
+     * @param movedPieceHadNotMoved  the moved piece's hasNotMoved flag before the move
+     * @param capturedPiece          the piece that was captured, or null
+     * @param capturedPosition       where the captured piece stood (differs from the end position for en passant)
+     * @param rookMove               the rook's move if the move was a castle, otherwise null
+     * @param rookHadNotMoved        the castling rook's hasNotMoved flag before the move
+     * @param previousLastMove       the game's last move before this one
+     * @param previousTurn           whose turn it was before the move
+     * @param previousWinner         the game's winner before the move
+     * @param previousHalfmoveClock  the halfmove clock before the move
+     */
+    public record MoveUndo(ChessMove move, ChessPiece movedPiece, boolean movedPieceHadNotMoved,
+                           ChessPiece capturedPiece, ChessPosition capturedPosition,
+                           ChessMove rookMove, boolean rookHadNotMoved,
+                           ChessMove previousLastMove, TeamColor previousTurn, TeamColor previousWinner,
+                           int previousHalfmoveClock) {
+    }
+    
     /**
      * Gets a valid moves for a piece at the given location (includes checks)
      *
@@ -65,83 +323,128 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        var allValidMoves = new ArrayList<ChessMove>();
         var piece = board.getPiece(startPosition);
+        if (piece == null) return null;
+        
+        // pick this piece's moves out of its team's move list
+        int square = Bitboards.squareOf(startPosition);
+        var validMoves = new ArrayList<ChessMove>();
+        for (int move : getMoveList(piece.getTeamColor()).moves()) {
+            if (PackedMove.from(move) == square) validMoves.add(PackedMove.toChessMove(move));
+        }
+        return validMoves;
+    }
+    
+    /**
+     * Gets every valid move for one team (includes checks)
+     *
+     * @param teamColor the team to get valid moves for
+     * @return valid moves of all the team's pieces
+     */
+    public Collection<ChessMove> allValidMoves(TeamColor teamColor) {
+        int[] moves = getMoveList(teamColor).moves();
+        return PackedMove.toChessMoves(moves, moves.length);
+    }
+    
+    /**
+     * Writes every valid move for one team into a buffer as packed moves (see {@link PackedMove}),
+     * so callers that search many positions can reuse one buffer instead of allocating moves
+     *
+     * @param teamColor the team to get valid moves for
+     * @param buffer    buffer with room for at least {@link PackedMove#MAX_MOVES} moves
+     * @return number of moves written to the start of the buffer
+     */
+    public int generateValidMoves(TeamColor teamColor, int[] buffer) {
+        var kingSafety = getCheckInfo(teamColor);
         
-        // add standard moves
-        var potentialMoves = ChessPiece.pieceMoves(board, startPosition);
-        for (var chessMove : potentialMoves) {
-            if (!wouldBeInCheck(chessMove)) allValidMoves.add(chessMove);
+        // add standard moves that keep the king safe, dropping the rest in place
+        int end = ChessMovesStrategies.generateAllMoves(board, teamColor, buffer, 0);
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            var type = board.getPiece(PackedMove.from(buffer[i])).getPieceType();
+            if (isLegal(buffer[i], type, kingSafety)) buffer[count++] = buffer[i];
         }
         
         // add en passant moves for pawns
-        if (piece != null && piece.getPieceType() == ChessPiece.PieceType.PAWN) {
-            int direction = piece.getTeamColor() == ChessGame.TeamColor.WHITE ? 1 : -1;
-            allValidMoves.addAll(getEnPassantMoves(startPosition, direction));
+        if (lastMove != null) {
+            for (long pawns = board.getPieceBitboard(teamColor, ChessPiece.PieceType.PAWN); pawns != 0; pawns &= pawns - 1) {
+                int square = Long.numberOfTrailingZeros(pawns);
+                count = addEnPassantMoves(square, board.getPiece(square), buffer, count);
+            }
         }
         
-        // add castling moves for king if it has not moved
-        if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING && piece.hasNotMoved()) {
-            allValidMoves.addAll(getKingCastlingMoves(startPosition));
+        // add castling moves for king if it has not moved and is not in check
+        long kings = board.getPieceBitboard(teamColor, ChessPiece.PieceType.KING);
+        if (kings != 0 && !kingSafety.inCheck()) {
+            int square = Long.numberOfTrailingZeros(kings);
+            if (board.getPiece(square).hasNotMoved()) count = addCastlingMoves(square, board.getPiece(square), buffer, count);
         }
-        
-        return allValidMoves;
+        return count;
     }
     
-    // Check for En Passant on both sides of the pawn
-    private Collection<ChessMove> getEnPassantMoves(ChessPosition startPosition, int direction) {
-        var moves = new ArrayList<ChessMove>();
+    // Check whether a pseudo-legal (non en passant) move keeps the mover's king out of check
+    private boolean isLegal(int move, ChessPiece.PieceType type, CheckInfo kingSafety) {
+        if (!kingSafety.hasKing()) return true; // no king to protect
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
         
-        // Column offsets for left and right checks
-        int[] columnOffsets = {-1, 1};
-        for (int offset : columnOffsets) {
-            ChessPosition adjacentPosition = new ChessPosition(startPosition.getRow(), startPosition.getColumn() + offset);
-            ChessPosition enPassantTarget = new ChessPosition(startPosition.getRow() + direction, startPosition.getColumn() + offset);
-            
-            if (adjacentPosition.isInbounds() && canBeEnPassant(adjacentPosition)) {
-                moves.add(new ChessMove(startPosition, enPassantTarget, null));
-            }
+        // the king can't shield the square it steps to, so look through its current square
+        if (type == ChessPiece.PieceType.KING) {
+            return attackersOf(to, otherTeam(kingSafety.teamColor()), board.getOccupancy() & ~Bitboards.bit(from)) == 0;
         }
-        return moves;
+        
+        // only the king can escape a double check
+        if (Long.bitCount(kingSafety.checkers()) > 1) return false;
+        
+        // a pinned piece must stay on the line between its king and the pinner
+        if ((kingSafety.pinned() & Bitboards.bit(from)) != 0
+                && (Bitboards.line(kingSafety.kingSquare(), from) & Bitboards.bit(to)) == 0) return false;
+        
+        // when in check, the move must capture the checker or block it
+        if (kingSafety.inCheck()) {
+            int checker = Long.numberOfTrailingZeros(kingSafety.checkers());
+            long evasions = Bitboards.between(kingSafety.kingSquare(), checker) | Bitboards.bit(checker);
+            return (evasions & Bitboards.bit(to)) != 0;
+        }
+        return true;
     }
     
-    // Check if the pawn at the given position can be captured by en passant
-    private boolean canBeEnPassant(ChessPosition position) {
-        var piece = board.getPiece(position);
-        // must be a pawn
-        if (piece == null || piece.getPieceType() != ChessPiece.PieceType.PAWN) return false;
-        // must have been last move
-        if (lastMove == null || !position.equals(lastMove.getEndPosition())) return false;
-        // must have been a double move
-        var diff = Math.abs(lastMove.getEndPosition().getRow() - lastMove.getStartPosition().getRow());
-        return (diff == 2);
+    // Add the en passant capture of a pawn that just moved two squares to beside this one
+    private int addEnPassantMoves(int square, ChessPiece pawn, int[] buffer, int count) {
+        if (lastMove == null) return count;
+        int lastFrom = Bitboards.squareOf(lastMove.getStartPosition());
+        int lastTo = Bitboards.squareOf(lastMove.getEndPosition());
+        
+        // must have been a double move that ended on an adjacent square of the same row
+        if (Math.abs(lastTo - lastFrom) != 16 || Bitboards.rowOf(lastTo) != Bitboards.rowOf(square)
+                || Math.abs(Bitboards.columnOf(lastTo) - Bitboards.columnOf(square)) != 1) return count;
+        // must be an enemy pawn
+        var piece = board.getPiece(lastTo);
+        if (piece == null || piece.getPieceType() != ChessPiece.PieceType.PAWN
+                || piece.getTeamColor() == pawn.getTeamColor()) return count;
+        
+        // land on the square the pawn skipped; simulated, since two pawns leave the rank at once
+        int move = PackedMove.of(square, (lastFrom + lastTo) / 2, null, PackedMove.EN_PASSANT | PackedMove.CAPTURE);
+        if (!wouldBeInCheck(PackedMove.toChessMove(move))) buffer[count++] = move;
+        return count;
     }
     
-    // Get valid castling moves for a king
-    private Collection<ChessMove> getKingCastlingMoves(ChessPosition kingStart) {
-        var moves = new ArrayList<ChessMove>();
-        var king = board.getPiece(kingStart);
-        if (king == null || king.getPieceType() != ChessPiece.PieceType.KING) return moves;
-        
+    // [kingEndColumn, rookColumn]
+    private static final int[][] CASTLING_COLUMNS = {
+            {7, 8}, // Kingside (h rook)
+            {3, 1}  // Queenside (a rook)
+    };
+    
+    // Add castling moves for a king that has not moved and is not in check
+    private int addCastlingMoves(int kingSquare, ChessPiece king, int[] buffer, int count) {
         // King must be at its starting position
-        if ((king.getTeamColor() == TeamColor.WHITE && !kingStart.equals(new ChessPosition(1, 5))) ||
-                (king.getTeamColor() == TeamColor.BLACK && !kingStart.equals(new ChessPosition(8, 5)))) {
-            return moves;
-        }
-        
-        // King must not have moved
-        if (!king.hasNotMoved()) return moves;
+        int homeRow = king.getTeamColor() == TeamColor.WHITE ? 1 : 8;
+        if (kingSquare != Bitboards.squareOf(homeRow, 5)) return count;
         
-        // [kingEndColumn, rookColumn]
-        int[][] castlingPositions = {
-                {7, 8}, // Kingside (h rook)
-                {3, 1}  // Queenside (a rook)
-        };
-        
-        for (int[] rookAndKingColumns : castlingPositions) {
-            var kingEnd = new ChessPosition(kingStart.getRow(), rookAndKingColumns[0]);
-            var rookPos = new ChessPosition(kingStart.getRow(), rookAndKingColumns[1]);
-            var rook = board.getPiece(rookPos);
+        for (int[] columns : CASTLING_COLUMNS) {
+            int kingEnd = Bitboards.squareOf(homeRow, columns[0]);
+            int rookSquare = Bitboards.squareOf(homeRow, columns[1]);
+            var rook = board.getPiece(rookSquare);
             
             // rook present, same color, and hasn't moved
             if (rook == null ||
@@ -149,25 +452,22 @@ public class ChessGame {
                     rook.getTeamColor() != king.getTeamColor() ||
                     !rook.hasNotMoved()) continue;
             
-            // clear path between king and rook
-            if (!isPathClearToCastle(kingStart, rookPos)) continue;
+            // clear path between king and rook, and king doesn't cross or land on an attacked square
+            if (!isPathClearToCastle(kingSquare, rookSquare, kingEnd)) continue;
             
-            moves.add(new ChessMove(kingStart, kingEnd, null));
+            buffer[count++] = PackedMove.of(kingSquare, kingEnd, null, PackedMove.CASTLE);
         }
-        return moves;
+        return count;
     }
     
-    // Check if path is clear between king and rook
-    private boolean isPathClearToCastle(ChessPosition kingPosition, ChessPosition rookPosition) {
-        var leftCol = Math.min(kingPosition.getColumn(), rookPosition.getColumn());
-        int rightCol = Math.max(kingPosition.getColumn(), rookPosition.getColumn());
+    // Check if path is clear between king and rook and the king's path is not attacked
+    private boolean isPathClearToCastle(int kingSquare, int rookSquare, int kingEnd) {
+        long occupancy = board.getOccupancy();
+        if ((Bitboards.between(kingSquare, rookSquare) & occupancy) != 0) return false;
         
-        // check each square between the king and the rook
-        for (int col = leftCol + 1; col < rightCol; col++) {
-            var currPosition = new ChessPosition(kingPosition.getRow(), col);
-            if (!board.squareIsEmpty(currPosition) || wouldBeInCheck(new ChessMove(kingPosition, currPosition, null))) {
-                return false; // found a piece in the way or was checked
-            }
+        var enemy = otherTeam(board.getPiece(kingSquare).getTeamColor());
+        for (long path = Bitboards.between(kingSquare, kingEnd) | Bitboards.bit(kingEnd); path != 0; path &= path - 1) {
+            if (attackersOf(Long.numberOfTrailingZeros(path), enemy, occupancy) != 0) return false;
         }
         return true;
     }
@@ -193,21 +493,13 @@ public class ChessGame {
         }
         
         // verify that move is valid
-        if (!validMoves(startPos).contains(move)) {
+        if (!move.getEndPosition().isInbounds() || !containsMove(getMoveList(piece.getTeamColor()), move)) {
             throw new InvalidMoveException("Invalid move");
         }
         
-        // make the move
-        executeMove(move);
-        
-        // update that piece has moved
-        piece.setHasNotMoved(false);
-        
-        // save previous move
-        lastMove = move;
-        
-        // switch turns
-        setTeamTurn(getTeamTurn() == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE);
+        // make the move and remember how to take it back
+        getHistory().push(applyMove(move));
+        moveLists = null;
         
         // check for checkmate or stalemate
         if (isInCheckmate(getTeamTurn())) {
@@ -217,6 +509,18 @@ public class ChessGame {
         }
     }
     
+    /**
+     * Takes back the most recent move made with {@link #makeMove(ChessMove)}
+     *
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public void unmakeMove() {
+        if (getHistory().isEmpty()) {
+            throw new IllegalStateException("No move to take back");
+        }
+        unmakeMove(getHistory().pop());
+    }
+    
     /**
      * Determines if the given team is in check
      *
@@ -230,20 +534,89 @@ public class ChessGame {
         // If king not on board, not in check
         if (kingPosition == null) return false;
         
-        // Check all valid moves of enemy pieces to see if any can attack King
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                var currPosition = new ChessPosition(row, col);
-                var currPiece = board.getPiece(currPosition);
-                if ((currPiece != null) && (currPiece.getTeamColor() != teamColor)) {
-                    for (ChessMove availableMove : ChessPiece.pieceMoves(board, currPosition)) {
-                        if (availableMove.getEndPosition().equals(kingPosition))
-                            return true;
-                    }
-                }
+        // Look outward from the king for any enemy piece that attacks it
+        return isSquareAttacked(kingPosition, otherTeam(teamColor));
+    }
+    
+    /**
+     * Determines if any piece of the given team attacks a square
+     *
+     * @param position  the square to look at
+     * @param byTeam    the attacking team
+     * @return True if a piece of byTeam could capture on the square
+     */
+    public boolean isSquareAttacked(ChessPosition position, TeamColor byTeam) {
+        return attackersOf(Bitboards.squareOf(position), byTeam, board.getOccupancy()) != 0;
+    }
+    
+    // Bitboard of byTeam's pieces attacking the square, given which squares are occupied
+    private long attackersOf(int square, TeamColor byTeam, long occupancy) {
+        long queens = board.getPieceBitboard(byTeam, ChessPiece.PieceType.QUEEN);
+        long diagonalSliders = board.getPieceBitboard(byTeam, ChessPiece.PieceType.BISHOP) | queens;
+        long straightSliders = board.getPieceBitboard(byTeam, ChessPiece.PieceType.ROOK) | queens;
+        return (Bitboards.knightAttacks(square) & board.getPieceBitboard(byTeam, ChessPiece.PieceType.KNIGHT))
+                | (Bitboards.kingAttacks(square) & board.getPieceBitboard(byTeam, ChessPiece.PieceType.KING))
+                // a pawn attacks the square if a pawn of the other color there would attack the pawn
+                | (Bitboards.pawnAttacks(otherTeam(byTeam), square) & board.getPieceBitboard(byTeam, ChessPiece.PieceType.PAWN))
+                | (diagonalSliders != 0 ? Bitboards.bishopAttacks(square, occupancy) & diagonalSliders : 0)
+                | (straightSliders != 0 ? Bitboards.rookAttacks(square, occupancy) & straightSliders : 0);
+    }
+    
+    // Checkers and pins against one team's king, reused until the board changes
+    private CheckInfo getCheckInfo(TeamColor teamColor) {
+        var cached = checkInfo;
+        if (cached != null && cached.teamColor() == teamColor && cached.board() == board
+                && cached.boardVersion() == board.getModificationCount()) {
+            return cached;
+        }
+        checkInfo = computeCheckInfo(teamColor);
+        return checkInfo;
+    }
+    
+    private CheckInfo computeCheckInfo(TeamColor teamColor) {
+        long kings = board.getPieceBitboard(teamColor, ChessPiece.PieceType.KING);
+        if (kings == 0) {
+            return new CheckInfo(teamColor, board, board.getModificationCount(), -1, 0, 0);
+        }
+        int kingSquare = Long.numberOfTrailingZeros(kings);
+        var enemy = otherTeam(teamColor);
+        long occupancy = board.getOccupancy();
+        long checkers = attackersOf(kingSquare, enemy, occupancy);
+        
+        // Enemy sliders that would attack the king if only enemy pieces were on the board
+        long enemies = board.getOccupancy(enemy);
+        long queens = board.getPieceBitboard(enemy, ChessPiece.PieceType.QUEEN);
+        long snipers = (Bitboards.rookAttacks(kingSquare, enemies)
+                & (board.getPieceBitboard(enemy, ChessPiece.PieceType.ROOK) | queens))
+                | (Bitboards.bishopAttacks(kingSquare, enemies)
+                & (board.getPieceBitboard(enemy, ChessPiece.PieceType.BISHOP) | queens));
+        // A lone friendly piece between the king and a sniper is pinned
+        long pinned = 0;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Bitboards.between(kingSquare, Long.numberOfTrailingZeros(snipers)) & occupancy;
+            if (Long.bitCount(blockers) == 1 && (blockers & board.getOccupancy(teamColor)) != 0) {
+                pinned |= blockers;
             }
         }
-        return false;
+        return new CheckInfo(teamColor, board, board.getModificationCount(), kingSquare, checkers, pinned);
+    }
+    
+    /**
+     * Safety of one team's king in a particular board state
+     *
+     * @param kingSquare  square of the king, or -1 if the team has no king on the board
+     * @param checkers    enemy pieces giving check
+     * @param pinned      friendly pieces that can only move along the line to their king
+     */
+    private record CheckInfo(TeamColor teamColor, ChessBoard board, int boardVersion,
+                             int kingSquare, long checkers, long pinned) {
+        boolean hasKing() {
+            return kingSquare >= 0;
+        }
+        
+        boolean inCheck() {
+            return checkers != 0;
+        }
     }
     
     /**
@@ -257,17 +630,7 @@ public class ChessGame {
         if (!isInCheck(teamColor)) return false;
         
         // King is in checkmate if currently in check and all of his side's potential moves are invalid
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                var currPosition = new ChessPosition(row, col);
-                if (board.getPiece(currPosition) != null && board.getPiece(currPosition).getTeamColor() == teamColor) {
-                    if (!validMoves(currPosition).isEmpty()) {
-                        return false;  // found a valid move, so not checkmate
-                    }
-                }
-            }
-        }
-        return true;  // no moves took king out of check
+        return getMoveList(teamColor).moves().length == 0;
     }
     
     /**
@@ -278,85 +641,238 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                var currPosition = new ChessPosition(row, col);
-                var currPiece = board.getPiece(currPosition);
-                if ((currPiece != null) && (currPiece.getTeamColor() == teamColor)
-                        && !validMoves(currPosition).isEmpty()) return false;
-            }
+        return getMoveList(teamColor).moves().length == 0;
+    }
+    
+    // Valid moves of one team, computed once per position and reused until the board changes
+    private MoveList getMoveList(TeamColor teamColor) {
+        if (moveLists == null) moveLists = new MoveList[2];
+        int index = Bitboards.colorIndex(teamColor);
+        var cached = moveLists[index];
+        if (cached != null && cached.board() == board && cached.boardVersion() == board.getModificationCount()
+                && cached.lastMove() == lastMove) {
+            return cached;
         }
-        return true;
+        if (moveBuffer == null) moveBuffer = new int[PackedMove.MAX_MOVES];
+        int count = generateValidMoves(teamColor, moveBuffer);
+        moveLists[index] = new MoveList(board, board.getModificationCount(), lastMove, Arrays.copyOf(moveBuffer, count));
+        return moveLists[index];
+    }
+    
+    private static boolean containsMove(MoveList moveList, ChessMove move) {
+        int wanted = PackedMove.of(move);
+        for (int validMove : moveList.moves()) {
+            if (PackedMove.withoutFlags(validMove) == wanted) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Valid moves of one team in a particular board state. Changes to hasNotMoved flags made
+     * directly on pieces are not noticed, since they don't change the board's modification count.
+     *
+     * @param lastMove  the game's last move when the list was made, which decides en passant
+     * @param moves     the valid moves, packed
+     */
+    private record MoveList(ChessBoard board, int boardVersion, ChessMove lastMove, int[] moves) {
     }
     
     // Find the position of the king
     private ChessPosition findKing(TeamColor teamColor) {
-        ChessPosition kingPosition = null;
-        
-        outerLoop:
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                var currPosition = new ChessPosition(row, col);
-                var currPiece = board.getPiece(currPosition);
-                if ((currPiece != null) && (currPiece.getTeamColor() == teamColor)
-                        && (currPiece.getPieceType() == ChessPiece.PieceType.KING)) {
-                    kingPosition = currPosition;
-                    break outerLoop;
-                }
-            }
-        }
-        return kingPosition;
+        long kings = board.getPieceBitboard(teamColor, ChessPiece.PieceType.KING);
+        return kings == 0 ? null : Bitboards.positionOf(Long.numberOfTrailingZeros(kings));
     }
     
-    // Check if a move would not put the team in check
+    private static TeamColor otherTeam(TeamColor teamColor) {
+        return teamColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+    
+    // Check if a move would put the moving team in check
     private boolean wouldBeInCheck(ChessMove move) {
         var teamColor = board.getPiece(move.getStartPosition()).getTeamColor();
-        var testGame = new ChessGame(new ChessBoard(board));
-        testGame.executeMove(move); // simulate move
-        return testGame.isInCheck(teamColor); // check if in check
+        var undo = applyMove(move); // simulate move
+        var inCheck = isInCheck(teamColor);
+        unmakeMove(undo);
+        return inCheck;
     }
     
-    // Move piece on board, applying castling/en-passant rules if needed (but no check validation)
-    private void executeMove(ChessMove move) {
-        var piece = this.getBoard().getPiece(move.getStartPosition());
+    /**
+     * Applies a move to the board in place, handling castling, en passant and promotion,
+     * and passes the turn. The move is not validated and game over is not checked.
+     *
+     * @param move a pseudo-legal move for the piece at its start position
+     * @return record that undoes the move when passed to {@link #unmakeMove(MoveUndo)}
+     */
+    public MoveUndo applyMove(ChessMove move) {
+        var start = move.getStartPosition();
+        var end = move.getEndPosition();
+        var piece = board.getPiece(start);
         
+        ChessPiece captured = board.getPiece(end);
+        ChessPosition capturedPosition = end;
         // if en passant, remove other pawn
-        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && move.getStartPosition().getColumn() != move.getEndPosition().getColumn()
-                && board.squareIsEmpty(move.getEndPosition())) { // move diagonal but no pawn diagonal, must be en passant
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && start.getColumn() != end.getColumn()
+                && captured == null) { // move diagonal but no pawn diagonal, must be en passant
             var direction = piece.getTeamColor() == ChessGame.TeamColor.WHITE ? 1 : -1;
-            var otherPawnPosition = new ChessPosition(move.getEndPosition().getRow() - direction,
-                    move.getEndPosition().getColumn());
-            board.clearPosition(otherPawnPosition);
+            capturedPosition = ChessPosition.of(end.getRow() - direction, end.getColumn());
+            captured = board.getPiece(capturedPosition);
+            board.clearPosition(capturedPosition);
         }
         
         // if castling, move rook
+        ChessMove rookMove = null;
+        boolean rookHadNotMoved = false;
         if (piece.getPieceType() == ChessPiece.PieceType.KING) {
-            var difference = move.getEndPosition().getColumn() - move.getStartPosition().getColumn();
+            var difference = end.getColumn() - start.getColumn();
             // kingside castle (king goes right)
             if (difference == 2) {
-                var rookStartPosition = new ChessPosition(move.getStartPosition().getRow(), 8);
-                var rookEndPosition = new ChessPosition(move.getStartPosition().getRow(), 6);
-                movePieceOnBoard(new ChessMove(rookStartPosition, rookEndPosition, null));
+                rookMove = ChessMove.of(ChessPosition.of(start.getRow(), 8), ChessPosition.of(start.getRow(), 6), null);
             } // queenside castle (king goes left)
             else if (difference == -2) {
-                var rookStartPosition = new ChessPosition(move.getStartPosition().getRow(), 1);
-                var rookEndPosition = new ChessPosition(move.getStartPosition().getRow(), 4);
-                movePieceOnBoard(new ChessMove(rookStartPosition, rookEndPosition, null));
+                rookMove = ChessMove.of(ChessPosition.of(start.getRow(), 1), ChessPosition.of(start.getRow(), 4), null);
+            }
+            if (rookMove != null) {
+                var rook = board.getPiece(rookMove.getStartPosition());
+                rookHadNotMoved = rook.hasNotMoved();
+                board.clearPosition(rookMove.getStartPosition());
+                board.addPiece(rookMove.getEndPosition(), rook);
+                rook.setHasNotMoved(false);
             }
         }
-        movePieceOnBoard(move);
+        
+        var undo = new MoveUndo(move, piece, piece.hasNotMoved(), captured, capturedPosition,
+                rookMove, rookHadNotMoved, lastMove, teamColor, winner, halfmoveClock);
+        
+        // move piece, swapping in the promoted piece if needed
+        board.clearPosition(start);
+        var placedPiece = piece;
+        if (move.getPromotionPiece() != null) {
+            placedPiece = new ChessPiece(piece.getTeamColor(), move.getPromotionPiece());
+        }
+        board.addPiece(end, placedPiece);
+        piece.setHasNotMoved(false);
+        placedPiece.setHasNotMoved(false);
+        
+        // save previous move, count it and switch turns
+        lastMove = move;
+        boolean resetsClock = piece.getPieceType() == ChessPiece.PieceType.PAWN || captured != null;
+        halfmoveClock = resetsClock ? 0 : halfmoveClock + 1;
+        if (piece.getTeamColor() == TeamColor.BLACK) fullmoveNumber++;
+        teamColor = otherTeam(piece.getTeamColor());
+        return undo;
     }
     
-    private void movePieceOnBoard(ChessMove move) {
-        // remove piece from previous position
-        var piece = this.getBoard().getPiece(move.getStartPosition());
-        board.clearPosition(move.getStartPosition());
-        // check for promotion
-        if (move.getPromotionPiece() != null) {
-            piece = new ChessPiece(piece.getTeamColor(), move.getPromotionPiece());
+    /**
+     * Restores the position from before a move made with {@link #applyMove(ChessMove)}.
+     * Moves must be taken back in the reverse order they were applied.
+     *
+     * @param undo the record returned when the move was applied
+     */
+    public void unmakeMove(MoveUndo undo) {
+        var move = undo.move();
+        var piece = undo.movedPiece();
+        
+        // put the moving piece (un-promoted) back and restore any captured piece
+        board.clearPosition(move.getEndPosition());
+        board.addPiece(move.getStartPosition(), piece);
+        piece.setHasNotMoved(undo.movedPieceHadNotMoved());
+        if (undo.capturedPiece() != null) {
+            board.addPiece(undo.capturedPosition(), undo.capturedPiece());
+        }
+        
+        // put a castled rook back
+        if (undo.rookMove() != null) {
+            var rook = board.getPiece(undo.rookMove().getEndPosition());
+            board.clearPosition(undo.rookMove().getEndPosition());
+            board.addPiece(undo.rookMove().getStartPosition(), rook);
+            rook.setHasNotMoved(undo.rookHadNotMoved());
+        }
+        
+        lastMove = undo.previousLastMove();
+        teamColor = undo.previousTurn();
+        winner = undo.previousWinner();
+        halfmoveClock = undo.previousHalfmoveClock();
+        if (piece.getTeamColor() == TeamColor.BLACK) fullmoveNumber--;
+    }
+    
+    /**
+     * Zobrist key of the position: pieces, side to move, castling rights and en passant file.
+     * The board keeps the piece part current on every change, so this costs O(1).
+     *
+     * @return 64-bit key that is equal for equal positions
+     */
+    public long getZobristKey() {
+        long key = board.getZobristKey() ^ Zobrist.castling(getCastlingRights());
+        if (teamColor == TeamColor.BLACK) key ^= Zobrist.blackToMove();
+        int enPassantFile = getEnPassantFile();
+        if (enPassantFile != 0) key ^= Zobrist.enPassantFile(enPassantFile);
+        return key;
+    }
+    
+    // Castling rights as Zobrist bits, read from the hasNotMoved flags of kings and rooks on their home squares
+    int getCastlingRights() {
+        int rights = 0;
+        if (canStillCastle(TeamColor.WHITE, 8)) rights |= Zobrist.WHITE_KINGSIDE;
+        if (canStillCastle(TeamColor.WHITE, 1)) rights |= Zobrist.WHITE_QUEENSIDE;
+        if (canStillCastle(TeamColor.BLACK, 8)) rights |= Zobrist.BLACK_KINGSIDE;
+        if (canStillCastle(TeamColor.BLACK, 1)) rights |= Zobrist.BLACK_QUEENSIDE;
+        return rights;
+    }
+    
+    // Check that a king and one of its rooks are unmoved on their home squares
+    private boolean canStillCastle(TeamColor color, int rookColumn) {
+        int row = color == TeamColor.WHITE ? 1 : 8;
+        var king = board.getPiece(ChessPosition.of(row, 5));
+        var rook = board.getPiece(ChessPosition.of(row, rookColumn));
+        return king != null && king.getPieceType() == ChessPiece.PieceType.KING && king.getTeamColor() == color
+                && king.hasNotMoved() && rook != null && rook.getPieceType() == ChessPiece.PieceType.ROOK
+                && rook.getTeamColor() == color && rook.hasNotMoved();
+    }
+    
+    // Column of a pawn that just moved two squares, or 0 if the last move was something else
+    int getDoublePushFile() {
+        if (lastMove == null || Math.abs(lastMove.getEndPosition().getRow() - lastMove.getStartPosition().getRow()) != 2) {
+            return 0;
+        }
+        var pawn = board.getPiece(lastMove.getEndPosition());
+        if (pawn == null || pawn.getPieceType() != ChessPiece.PieceType.PAWN) return 0;
+        return lastMove.getEndPosition().getColumn();
+    }
+    
+    // Column of a pawn the side to move could capture en passant, or 0 if there is none
+    int getEnPassantFile() {
+        if (getDoublePushFile() == 0) return 0;
+        var pawnPosition = lastMove.getEndPosition();
+        var pawn = board.getPiece(pawnPosition);
+        
+        // only counts if an enemy pawn stands beside the pawn that just moved
+        long neighbors = Bitboards.kingAttacks(Bitboards.squareOf(pawnPosition))
+                & (0xFFL << (8 * (pawnPosition.getRow() - 1)));
+        long capturers = board.getPieceBitboard(otherTeam(pawn.getTeamColor()), ChessPiece.PieceType.PAWN);
+        return (neighbors & capturers) != 0 ? pawnPosition.getColumn() : 0;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ChessGame that = (ChessGame) o;
+        return getZobristKey() == that.getZobristKey() && teamColor == that.teamColor && winner == that.winner
+                && getCastlingRights() == that.getCastlingRights() && getEnPassantFile() == that.getEnPassantFile()
+                && Objects.equals(board, that.board);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(getZobristKey());
+    }
+    
+    // History is transient, so it is missing on games built by deserialization
+    private Deque<MoveUndo> getHistory() {
+        if (history == null) {
+            history = new ArrayDeque<>();
         }
-        // add piece to new position
-        board.addPiece(move.getEndPosition(), piece);
+        return history;
     }
     
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package chess;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Gson adapters that read positions and moves as their shared instances ({@link ChessPosition#of},
+ * {@link ChessMove#of}) instead of allocating new ones. The JSON is the same as Gson's default.
+ */
+public final class ChessJsonAdapters {
+
+    private ChessJsonAdapters() {
+    }
+
+    /**
+     * Registers the adapters with a Gson builder
+     *
+     * @param builder the builder to add the adapters to
+     * @return the same builder, for chaining
+     */
+    public static GsonBuilder register(GsonBuilder builder) {
+        return builder
+                .registerTypeAdapter(ChessPosition.class, new PositionAdapter().nullSafe())
+                .registerTypeAdapter(ChessMove.class, new MoveAdapter().nullSafe());
+    }
+
+    private static class PositionAdapter extends TypeAdapter<ChessPosition> {
+        @Override
+        public void write(JsonWriter out, ChessPosition position) throws IOException {
+            out.beginObject();
+            out.name("row").value(position.getRow());
+            out.name("col").value(position.getColumn());
+            out.endObject();
+        }
+
+        @Override
+        public ChessPosition read(JsonReader in) throws IOException {
+            int row = 0;
+            int col = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "row" -> row = in.nextInt();
+                    case "col" -> col = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return ChessPosition.of(row, col);
+        }
+    }
+
+    private static class MoveAdapter extends TypeAdapter<ChessMove> {
+        private final TypeAdapter<ChessPosition> positions = new PositionAdapter().nullSafe();
+
+        @Override
+        public void write(JsonWriter out, ChessMove move) throws IOException {
+            out.beginObject();
+            out.name("startPosition");
+            positions.write(out, move.getStartPosition());
+            out.name("endPosition");
+            positions.write(out, move.getEndPosition());
+            if (move.getPromotionPiece() != null) { // Gson leaves out null fields by default
+                out.name("promotionPiece").value(move.getPromotionPiece().name());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ChessMove read(JsonReader in) throws IOException {
+            ChessPosition start = null;
+            ChessPosition end = null;
+            ChessPiece.PieceType promotion = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "startPosition" -> start = positions.read(in);
+                    case "endPosition" -> end = positions.read(in);
+                    case "promotionPiece" -> {
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                        } else {
+                            promotion = ChessPiece.PieceType.valueOf(in.nextString());
+                        }
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            if (start == null || end == null) return new ChessMove(start, end, promotion);
+            return ChessMove.of(start, end, promotion);
+        }
+    }
+}
@@ -14,12 +14,42 @@ public class ChessMove {
     private final ChessPosition endPosition;
     private final ChessPiece.PieceType promotionPiece;
 
+    // Shared instances of on-board moves, indexed like a PackedMove without flags; filled in on first use.
+    // Moves are immutable, so a race only means two equal instances, never a broken one.
+    private static final ChessMove[] MOVES = new ChessMove[PackedMove.CAPTURE];
+
     public ChessMove(ChessPosition startPosition, ChessPosition endPosition, ChessPiece.PieceType promotionPiece) {
         this.startPosition = startPosition;
         this.endPosition = endPosition;
         this.promotionPiece = promotionPiece;
     }
 
+    /**
+     * Gets a move, reusing a shared instance (with shared positions) for moves between on-board squares
+     *
+     * @return move with the given start, end and promotion piece
+     */
+    public static ChessMove of(ChessPosition startPosition, ChessPosition endPosition, ChessPiece.PieceType promotionPiece) {
+        if (!startPosition.isInbounds() || !endPosition.isInbounds()) {
+            return new ChessMove(startPosition, endPosition, promotionPiece);
+        }
+        return of(PackedMove.of(Bitboards.squareOf(startPosition), Bitboards.squareOf(endPosition), promotionPiece, 0));
+    }
+
+    /**
+     * @return the shared instance of a packed move (see {@link PackedMove}); its flags are ignored
+     */
+    public static ChessMove of(int packedMove) {
+        int index = PackedMove.withoutFlags(packedMove);
+        var move = MOVES[index];
+        if (move == null) {
+            move = new ChessMove(ChessPosition.of(PackedMove.from(index)), ChessPosition.of(PackedMove.to(index)),
+                    PackedMove.promotion(index));
+            MOVES[index] = move;
+        }
+        return move;
+    }
+
     /**
      * @return ChessPosition of starting location
      */
@@ -67,6 +97,8 @@ public class ChessMove {
 
     @Override
     public int hashCode() {
-        return Objects.hash(startPosition, endPosition, promotionPiece);
+        int result = 31 + Objects.hashCode(startPosition);
+        result = 31 * result + Objects.hashCode(endPosition);
+        return 31 * result + Objects.hashCode(promotionPiece); // same as Objects.hash, without the varargs array
     }
 }
@@ -1,23 +1,77 @@
 package chess;
 
-import java.util.ArrayList;
 import java.util.Collection;
 
 public class ChessMovesStrategies {
 
+    // One shared instance per piece type, indexed by PieceType ordinal. The strategies keep no
+    // state, so any number of games and threads can use them at once.
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+    private static final PieceMovesStrategy[] STRATEGIES = new PieceMovesStrategy[TYPES.length];
+
+    static {
+        STRATEGIES[ChessPiece.PieceType.PAWN.ordinal()] = new PawnMovesStrategy();
+        STRATEGIES[ChessPiece.PieceType.KNIGHT.ordinal()] = new KnightMovesStrategy();
+        STRATEGIES[ChessPiece.PieceType.BISHOP.ordinal()] = new BishopMovesStrategy();
+        STRATEGIES[ChessPiece.PieceType.ROOK.ordinal()] = new RookMovesStrategy();
+        STRATEGIES[ChessPiece.PieceType.QUEEN.ordinal()] = new QueenMovesStrategy();
+        STRATEGIES[ChessPiece.PieceType.KING.ordinal()] = new KingMovesStrategy();
+    }
+
     public static PieceMovesStrategy getPieceStrategy(ChessPiece.PieceType type) {
-        return switch (type) {
-            case PAWN -> new PawnMovesStrategy();
-            case KNIGHT -> new KnightMovesStrategy();
-            case BISHOP -> new BishopMovesStrategy();
-            case ROOK -> new RookMovesStrategy();
-            case QUEEN -> new QueenMovesStrategy();
-            case KING -> new KingMovesStrategy();
-        };
+        return STRATEGIES[type.ordinal()];
+    }
+
+    /**
+     * Writes the moves of every piece of one color into a buffer as packed moves, one piece type
+     * at a time. Moves that leave the king in danger are included.
+     *
+     * @param board  board the pieces are on
+     * @param color  color to generate moves for
+     * @param buffer buffer with room for the moves
+     * @param count  number of moves already in the buffer
+     * @return number of moves in the buffer afterwards
+     */
+    public static int generateAllMoves(ChessBoard board, ChessGame.TeamColor color, int[] buffer, int count) {
+        for (int type = 0; type < STRATEGIES.length; type++) {
+            long pieces = board.getPieceBitboard(color, TYPES[type]);
+            if (pieces != 0) count = STRATEGIES[type].generateMoves(board, color, pieces, buffer, count);
+        }
+        return count;
     }
 
     public interface PieceMovesStrategy {
-        Collection<ChessMove> calculateValidMoves(ChessBoard board, ChessPosition position);
+
+        /**
+         * Writes the moves of the piece on a square into a buffer as packed moves (see {@link PackedMove}).
+         * Like {@link #calculateValidMoves}, moves that leave the king in danger are included.
+         *
+         * @param board  board the piece is on
+         * @param square square of the piece (0-63)
+         * @param buffer buffer to write the moves into
+         * @param count  number of moves already in the buffer
+         * @return number of moves in the buffer afterwards
+         */
+        int generateMoves(ChessBoard board, int square, int[] buffer, int count);
+
+        /**
+         * Writes the moves of several pieces of this type and one color into a buffer as packed moves
+         *
+         * @param pieces bitboard of the pieces to generate moves for
+         * @return number of moves in the buffer afterwards
+         */
+        default int generateMoves(ChessBoard board, ChessGame.TeamColor color, long pieces, int[] buffer, int count) {
+            for (; pieces != 0; pieces &= pieces - 1) {
+                count = generateMoves(board, Long.numberOfTrailingZeros(pieces), buffer, count);
+            }
+            return count;
+        }
+
+        default Collection<ChessMove> calculateValidMoves(ChessBoard board, ChessPosition position) {
+            var buffer = new int[PackedMove.MAX_PIECE_MOVES];
+            int count = generateMoves(board, Bitboards.squareOf(position), buffer, 0);
+            return PackedMove.toChessMoves(buffer, count);
+        }
     }
 
     private static class PawnMovesStrategy implements PieceMovesStrategy {
@@ -27,174 +81,116 @@ public class ChessMovesStrategies {
                 ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
                 ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN
         };
-        private final ArrayList<ChessMove> moves = new ArrayList<>();
-        private ChessBoard board;
-        private int startingRow;
-        private int endingRow;
 
         @Override
-        public Collection<ChessMove> calculateValidMoves(ChessBoard board, ChessPosition position) {
-            this.board = board;
-            ChessPiece piece = board.getPiece(position);
-            int myRow = position.getRow();
-            int myCol = position.getColumn();
-
-            int direction = piece.getTeamColor() == ChessGame.TeamColor.WHITE ? 1 : -1;
-            startingRow = piece.getTeamColor() == ChessGame.TeamColor.WHITE ? 2 : 7;
-            endingRow = piece.getTeamColor() == ChessGame.TeamColor.WHITE ? 8 : 1;
+        public int generateMoves(ChessBoard board, int square, int[] buffer, int count) {
+            return generateMoves(board, board.getPiece(square).getTeamColor(), Bitboards.bit(square), buffer, count);
+        }
 
-            // Move one forward
-            var oneForward = new ChessPosition(myRow + direction, myCol);
-            addMoveIfValid(position, oneForward, true);
+        // Moves all the pawns at once by shifting their bitboard toward the far row
+        @Override
+        public int generateMoves(ChessBoard board, ChessGame.TeamColor color, long pawns, int[] buffer, int count) {
+            boolean white = color == ChessGame.TeamColor.WHITE;
+            int forward = white ? 8 : -8;
+            long endingRow = Bitboards.rowMask(white ? 8 : 1);
+            long empty = ~board.getOccupancy();
+            long enemies = board.getOccupancy(otherTeam(color));
+            pawns &= ~endingRow; // nowhere left to go
+
+            // Move one forward, then two forward from the starting row
+            long oneForward = shift(pawns, forward) & empty;
+            long twoForward = shift(oneForward & Bitboards.rowMask(white ? 3 : 6), forward) & empty;
+            count = addPawnMoves(oneForward, forward, 0, endingRow, buffer, count);
+            count = addPawnMoves(twoForward, 2 * forward, PackedMove.DOUBLE_PUSH, endingRow, buffer, count);
 
             // Capture moves: left and right
-            int[] captureDirections = {-1, 1};
-            for (int captureDirection : captureDirections) {
-                ChessPosition capturePosition = new ChessPosition(myRow + direction, myCol + captureDirection);
-                if (capturePosition.isInbounds() && !board.squareIsEmpty(capturePosition) &&
-                        board.getPiece(capturePosition).getTeamColor() != piece.getTeamColor()) {
-                    addMoveIfValid(position, capturePosition, false);
-                }
-            }
-
-            return moves;
+            long leftCaptures = shift(pawns & ~Bitboards.FILE_A, forward - 1) & enemies;
+            long rightCaptures = shift(pawns & ~Bitboards.FILE_H, forward + 1) & enemies;
+            count = addPawnMoves(leftCaptures, forward - 1, PackedMove.CAPTURE, endingRow, buffer, count);
+            return addPawnMoves(rightCaptures, forward + 1, PackedMove.CAPTURE, endingRow, buffer, count);
         }
 
-        private void addMoveIfValid(ChessPosition from, ChessPosition to, boolean checkTwoForward) {
-            if (to.isInbounds() && (board.squareIsEmpty(to) || !checkTwoForward)) {
-                if (to.getRow() == endingRow) {
+        // Add a move to each target square from the square offset behind it
+        private static int addPawnMoves(long targets, int offset, int flags, long endingRow, int[] buffer, int count) {
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if ((endingRow & Bitboards.bit(to)) != 0) {
                     // Promotion
                     for (ChessPiece.PieceType type : PROMOTION_TYPES) {
-                        moves.add(new ChessMove(from, to, type));
+                        buffer[count++] = PackedMove.of(to - offset, to, type, flags);
                     }
                 } else {
                     // Regular move
-                    moves.add(new ChessMove(from, to, null));
-                    if (checkTwoForward && from.getRow() == startingRow) {
-                        // Check for two squares forward on first move
-                        ChessPosition twoForward = new ChessPosition(from.getRow() + 2 * (endingRow == 8 ? 1 : -1), from.getColumn());
-                        if (board.squareIsEmpty(twoForward)) {
-                            moves.add(new ChessMove(from, twoForward, null));
-                        }
-                    }
+                    buffer[count++] = PackedMove.of(to - offset, to, null, flags);
                 }
             }
+            return count;
+        }
+
+        private static long shift(long bitboard, int offset) {
+            return offset > 0 ? bitboard << offset : bitboard >>> -offset;
         }
     }
 
 
     private static class BishopMovesStrategy implements PieceMovesStrategy {
-        private static final int[][] DIRECTIONS = {
-                {1, 1}, {1, -1}, {-1, 1}, {-1, -1}  // diagonals only
-        };
-
         @Override
-        public Collection<ChessMove> calculateValidMoves(ChessBoard board, ChessPosition myPosition) {
-            return calculateDirectionalMoves(board, myPosition, DIRECTIONS);
+        public int generateMoves(ChessBoard board, int square, int[] buffer, int count) {
+            // diagonals only
+            return addTargetMoves(board, square, Bitboards.bishopAttacks(square, board.getOccupancy()), buffer, count);
         }
     }
 
     private static class RookMovesStrategy implements PieceMovesStrategy {
-        private static final int[][] DIRECTIONS = {
-                {0, 1}, {0, -1}, {-1, 0}, {1, 0}    // up down left right
-        };
-
         @Override
-        public Collection<ChessMove> calculateValidMoves(ChessBoard board, ChessPosition myPosition) {
-            return calculateDirectionalMoves(board, myPosition, DIRECTIONS);
+        public int generateMoves(ChessBoard board, int square, int[] buffer, int count) {
+            // up down left right
+            return addTargetMoves(board, square, Bitboards.rookAttacks(square, board.getOccupancy()), buffer, count);
         }
     }
 
 
     private static class QueenMovesStrategy implements PieceMovesStrategy {
-        private static final int[][] DIRECTIONS = {
-                {0, 1}, {0, -1}, {-1, 0}, {1, 0},   // up down left right
-                {1, 1}, {1, -1}, {-1, 1}, {-1, -1}  // diagonals
-        };
-
         @Override
-        public Collection<ChessMove> calculateValidMoves(ChessBoard board, ChessPosition myPosition) {
-            return calculateDirectionalMoves(board, myPosition, DIRECTIONS);
+        public int generateMoves(ChessBoard board, int square, int[] buffer, int count) {
+            long occupancy = board.getOccupancy();
+            long targets = Bitboards.rookAttacks(square, occupancy) | Bitboards.bishopAttacks(square, occupancy);
+            return addTargetMoves(board, square, targets, buffer, count);
         }
     }
 
 
     private static class KingMovesStrategy implements PieceMovesStrategy {
-        private static final int[][] POSSIBLE_STEPS = {
-                {0, 1}, {0, -1}, {-1, 0}, {1, 0},   // up down left right
-                {1, 1}, {1, -1}, {-1, 1}, {-1, -1}  // diagonals
-        };
-
         @Override
-        public Collection<ChessMove> calculateValidMoves(ChessBoard board, ChessPosition myPosition) {
-            return calculateStepMoves(board, myPosition, POSSIBLE_STEPS);
+        public int generateMoves(ChessBoard board, int square, int[] buffer, int count) {
+            // one step in any direction
+            return addTargetMoves(board, square, Bitboards.kingAttacks(square), buffer, count);
         }
     }
 
 
     private static class KnightMovesStrategy implements PieceMovesStrategy {
-        private static final int[][] POSSIBLE_STEPS = {   // all L-shapes
-                {2, 1}, {2, -1}, {-2, 1}, {-2, -1},
-                {1, 2}, {1, -2}, {-1, 2}, {-1, -2}
-        };
-
         @Override
-        public Collection<ChessMove> calculateValidMoves(ChessBoard board, ChessPosition myPosition) {
-            return calculateStepMoves(board, myPosition, POSSIBLE_STEPS);
+        public int generateMoves(ChessBoard board, int square, int[] buffer, int count) {
+            // all L-shapes
+            return addTargetMoves(board, square, Bitboards.knightAttacks(square), buffer, count);
         }
     }
 
 
-    private static Collection<ChessMove> calculateDirectionalMoves(ChessBoard board, ChessPosition position, int[][] directions) {
-        var moves = new ArrayList<ChessMove>();
-        var piece = board.getPiece(position);
-        var row = position.getRow();
-        var col = position.getColumn();
-
-        for (int[] direction : directions) {
-            int rowDirection = direction[0];
-            int colDirection = direction[1];
-            int stepSize = 1;
-            ChessPosition newPosition = new ChessPosition(row + rowDirection * stepSize, col + colDirection * stepSize);
-
-            while (newPosition.isInbounds()) {
-                ChessPiece pieceAtPosition = board.getPiece(newPosition);
-                // If the position is occupied, add to moves and continue searching in this direction
-                if (pieceAtPosition == null) {
-                    moves.add(new ChessMove(position, newPosition, null));
-                    stepSize++;
-                    newPosition = new ChessPosition(row + rowDirection * stepSize, col + colDirection * stepSize);
-                }
-                // If the position is occupied by an enemy piece check for enemy and stop searching in this direction
-                else {
-                    // Add to moves if a capture is possible
-                    if (pieceAtPosition.getTeamColor() != piece.getTeamColor()) {
-                        moves.add(new ChessMove(position, newPosition, null));
-                    }
-                    break;
-                }
-            }
+    // Add a move to each target square that is empty or holds an enemy piece
+    private static int addTargetMoves(ChessBoard board, int square, long targets, int[] buffer, int count) {
+        var color = board.getPiece(square).getTeamColor();
+        long enemies = board.getOccupancy(otherTeam(color));
+        for (targets &= ~board.getOccupancy(color); targets != 0; targets &= targets - 1) {
+            int target = Long.numberOfTrailingZeros(targets);
+            int flags = (enemies & Bitboards.bit(target)) != 0 ? PackedMove.CAPTURE : 0;
+            buffer[count++] = PackedMove.of(square, target, null, flags);
         }
-
-        return moves;
+        return count;
     }
 
-    public static Collection<ChessMove> calculateStepMoves(ChessBoard board, ChessPosition position, int[][] possibleSteps) {
-        var moves = new ArrayList<ChessMove>();
-        var piece = board.getPiece(position);
-
-        for (int[] step : possibleSteps) {
-            int newRow = position.getRow() + step[0];
-            int newColumn = position.getColumn() + step[1];
-            ChessPosition newPosition = new ChessPosition(newRow, newColumn);
-            if (newPosition.isInbounds()) {
-                ChessPiece pieceAtPosition = board.getPiece(newPosition);
-                // If the position is unoccupied or occupied by an opponent's piece, add to moves
-                if (pieceAtPosition == null || pieceAtPosition.getTeamColor() != piece.getTeamColor()) {
-                    moves.add(new ChessMove(position, newPosition, null));
-                }
-            }
-        }
-        return moves;
+    private static ChessGame.TeamColor otherTeam(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
     }
 }
@@ -2,7 +2,6 @@ package chess;
 
 import java.util.Collection;
 import java.util.Map;
-import java.util.Objects;
 
 import chess.ChessMovesStrategies.*;
 
@@ -24,6 +23,13 @@ public class ChessPiece {
         this.hasNotMoved = true;
     }
 
+    // Copy constructor
+    public ChessPiece(ChessPiece otherPiece) {
+        this.pieceColor = otherPiece.pieceColor;
+        this.type = otherPiece.type;
+        this.hasNotMoved = otherPiece.hasNotMoved;
+    }
+
     /**
      * The various different chess piece options
      */
@@ -93,7 +99,7 @@ public class ChessPiece {
 
     @Override
     public int hashCode() {
-        return Objects.hash(pieceColor, type);
+        return pieceColor.ordinal() * 8 + type.ordinal();
     }
 
     /**
@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -13,11 +11,40 @@ public class ChessPosition {
     private final int row;
     private final int col;
 
+    // The shared instance of each on-board position, indexed by square (see Bitboards)
+    private static final ChessPosition[] POSITIONS = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < POSITIONS.length; square++) {
+            POSITIONS[square] = new ChessPosition(square / 8 + 1, square % 8 + 1);
+        }
+    }
+
     public ChessPosition(int row, int col) {
         this.row = row;
         this.col = col;
     }
 
+    /**
+     * Gets a position without allocating. On-board positions come from a table of shared
+     * instances; off-board positions (which some callers bounds-check later) are created as needed.
+     *
+     * @return position with the given 1-indexed row and column
+     */
+    public static ChessPosition of(int row, int col) {
+        if (1 <= row && row <= 8 && 1 <= col && col <= 8) {
+            return POSITIONS[(row - 1) * 8 + (col - 1)];
+        }
+        return new ChessPosition(row, col);
+    }
+
+    /**
+     * @return the shared instance of the position of a square index (0-63)
+     */
+    public static ChessPosition of(int square) {
+        return POSITIONS[square];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -61,6 +88,6 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return 31 * (31 + row) + col; // same as Objects.hash(row, col), without boxing
     }
 }
@@ -0,0 +1,78 @@
+package chess;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Versioned binary form of a whole {@link ChessGame}, for storing games in far less space than JSON.
+ * <ul>
+ *     <li>byte 0: format {@link #VERSION}</li>
+ *     <li>bytes 1-32: the position, as written by {@link PositionCodec}</li>
+ *     <li>byte 33: winner (0 for none, 1 for White, 2 for Black)</li>
+ *     <li>bytes 34-35: last move packed as in {@link PackedMove} without flags, or -1 for none</li>
+ * </ul>
+ * Move history is left out, as it is when a game is serialized with Gson.
+ */
+public final class GameCodec {
+
+    public static final byte VERSION = 1;
+    public static final int BYTES = 1 + PositionCodec.BYTES + 3;
+
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+    private static final short NO_MOVE = -1;
+
+    private GameCodec() {
+    }
+
+    /**
+     * @return the game as {@link #BYTES} bytes
+     * @throws IllegalArgumentException if the board holds more than 32 pieces
+     */
+    public static byte[] encode(ChessGame game) {
+        var buffer = ByteBuffer.allocate(BYTES);
+        buffer.put(VERSION);
+        PositionCodec.write(game, buffer);
+        buffer.put((byte) (game.getWinner() == null ? 0 : game.getWinner().ordinal() + 1));
+        var lastMove = game.getLastMove();
+        buffer.putShort(lastMove == null ? NO_MOVE : (short) PackedMove.of(lastMove));
+        return buffer.array();
+    }
+
+    /**
+     * @param bytes a game written by {@link #encode}
+     * @return the decoded game
+     * @throws IllegalArgumentException if the bytes are not an encoded game or use an unknown version
+     */
+    public static ChessGame decode(byte[] bytes) {
+        if (!isEncoded(bytes)) {
+            throw new IllegalArgumentException("Not an encoded game");
+        }
+        if (bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unknown encoded game version: " + bytes[0]);
+        }
+        if (bytes.length != BYTES) {
+            throw new IllegalArgumentException("Encoded game must be " + BYTES + " bytes, not " + bytes.length);
+        }
+        var buffer = ByteBuffer.wrap(bytes, 1, BYTES - 1);
+        var game = PositionCodec.read(buffer);
+
+        int winner = buffer.get();
+        if (winner < 0 || winner > COLORS.length) throw new IllegalArgumentException("Bad winner in encoded game");
+        game.setWinner(winner == 0 ? null : COLORS[winner - 1]);
+
+        short lastMove = buffer.getShort();
+        if (lastMove != NO_MOVE) {
+            if (lastMove < 0) throw new IllegalArgumentException("Bad last move in encoded game");
+            game.setLastMove(ChessMove.of(lastMove));
+        }
+        return game;
+    }
+
+    /**
+     * Tells encoded games apart from other formats, such as JSON, which never starts with a small byte
+     *
+     * @return whether the bytes start like an encoded game of some version
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] > 0 && bytes[0] < ' ';
+    }
+}
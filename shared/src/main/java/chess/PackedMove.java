@@ -0,0 +1,86 @@
+package chess;
+
+import java.util.ArrayList;
+
+/**
+ * Helpers for moves packed into an {@code int}, so move generation can fill a reusable
+ * {@code int[]} instead of allocating a {@link ChessMove} for every target square.
+ * <p>
+ * Bits 0-5 hold the start square and bits 6-11 the end square (see {@link Bitboards}),
+ * bits 12-14 the promotion piece (its ordinal + 1, or 0 for none) and the bits above that the flags.
+ */
+public final class PackedMove {
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int DOUBLE_PUSH = 1 << 16;
+    public static final int EN_PASSANT = 1 << 17;
+    public static final int CASTLE = 1 << 18;
+
+    // Room for every move in any position (the most ever found in a legal position is 218)
+    public static final int MAX_MOVES = 256;
+    // Room for the moves of a single piece (a queen has at most 27, a pawn 12 counting promotions)
+    public static final int MAX_PIECE_MOVES = 32;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {
+    }
+
+    /**
+     * @param from      start square (0-63)
+     * @param to        end square (0-63)
+     * @param promotion piece to promote to, or null
+     * @param flags     any of {@link #CAPTURE}, {@link #DOUBLE_PUSH}, {@link #EN_PASSANT} and {@link #CASTLE}
+     * @return the packed move
+     */
+    public static int of(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        return from | to << 6 | (promotion == null ? 0 : promotion.ordinal() + 1) << 12 | flags;
+    }
+
+    public static int of(ChessMove move) {
+        return of(Bitboards.squareOf(move.getStartPosition()), Bitboards.squareOf(move.getEndPosition()),
+                move.getPromotionPiece(), 0);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return move >>> 6 & 63;
+    }
+
+    /**
+     * @return the piece the move promotes to, or null
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int promotion = move >>> 12 & 7;
+        return promotion == 0 ? null : TYPES[promotion - 1];
+    }
+
+    /**
+     * @return the move with its flags cleared, leaving the squares and promotion piece
+     */
+    public static int withoutFlags(int move) {
+        return move & (CAPTURE - 1);
+    }
+
+    public static boolean hasFlag(int move, int flag) {
+        return (move & flag) != 0;
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.of(move);
+    }
+
+    /**
+     * @return the first count packed moves of the buffer as ChessMoves
+     */
+    public static ArrayList<ChessMove> toChessMoves(int[] buffer, int count) {
+        var moves = new ArrayList<ChessMove>(count);
+        for (int i = 0; i < count; i++) {
+            moves.add(toChessMove(buffer[i]));
+        }
+        return moves;
+    }
+}
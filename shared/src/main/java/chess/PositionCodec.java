@@ -0,0 +1,119 @@
+package chess;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size binary form of a position: everything a FEN records, in {@link #BYTES} bytes.
+ * <ul>
+ *     <li>bytes 0-7: bitboard of occupied squares</li>
+ *     <li>bytes 8-23: one 4-bit piece code per occupied square, in square order (a1 first), high nibble first;
+ *     the code is the piece's {@link Bitboards#pieceIndex}</li>
+ *     <li>byte 24: castling right bits (Zobrist.WHITE_KINGSIDE etc.) in bits 0-3, and bit 4 set if Black is to move</li>
+ *     <li>byte 25: file (1-8) of a pawn that just moved two squares, or 0</li>
+ *     <li>byte 26: halfmove clock, capped at 255</li>
+ *     <li>bytes 27-28: fullmove number, capped at 65535</li>
+ *     <li>bytes 29-31: zero, reserved</li>
+ * </ul>
+ * Positions with more than 32 pieces (only possible on hand-built boards) can't be encoded.
+ */
+public final class PositionCodec {
+
+    public static final int BYTES = 32;
+
+    private static final int MAX_PIECES = 32;
+    private static final int BLACK_TO_MOVE = 1 << 4;
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PositionCodec() {
+    }
+
+    /**
+     * @return the game's position as {@link #BYTES} bytes
+     * @throws IllegalArgumentException if the board holds more than 32 pieces
+     */
+    public static byte[] encode(ChessGame game) {
+        var buffer = ByteBuffer.allocate(BYTES);
+        write(game, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the game's position at the buffer's position, advancing it by {@link #BYTES} bytes
+     *
+     * @throws IllegalArgumentException if the board holds more than 32 pieces
+     */
+    public static void write(ChessGame game, ByteBuffer buffer) {
+        var board = game.getBoard();
+        long occupancy = board.getOccupancy();
+        if (Long.bitCount(occupancy) > MAX_PIECES) {
+            throw new IllegalArgumentException("Can't encode a board with more than " + MAX_PIECES + " pieces");
+        }
+        buffer.putLong(occupancy);
+
+        // two pieces per byte, in square order
+        byte[] pieces = new byte[MAX_PIECES / 2];
+        int i = 0;
+        for (long squares = occupancy; squares != 0; squares &= squares - 1, i++) {
+            var piece = board.getPiece(Long.numberOfTrailingZeros(squares));
+            int code = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+            pieces[i / 2] |= (byte) (i % 2 == 0 ? code << 4 : code);
+        }
+        buffer.put(pieces);
+
+        int sideAndCastling = game.getCastlingRights();
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) sideAndCastling |= BLACK_TO_MOVE;
+        buffer.put((byte) sideAndCastling);
+        buffer.put((byte) game.getDoublePushFile());
+        buffer.put((byte) Math.min(game.getHalfmoveClock(), 255));
+        buffer.putShort((short) Math.min(game.getFullmoveNumber(), 65535));
+        buffer.put(new byte[3]);
+    }
+
+    /**
+     * @param bytes a position written by {@link #encode}
+     * @return a new game in that position
+     * @throws IllegalArgumentException if the bytes are not an encoded position
+     */
+    public static ChessGame decode(byte[] bytes) {
+        if (bytes.length != BYTES) {
+            throw new IllegalArgumentException("Encoded position must be " + BYTES + " bytes, not " + bytes.length);
+        }
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads a position at the buffer's position, advancing it by {@link #BYTES} bytes
+     *
+     * @return a new game in that position
+     * @throws IllegalArgumentException if the bytes are not an encoded position
+     */
+    public static ChessGame read(ByteBuffer buffer) {
+        long occupancy = buffer.getLong();
+        if (Long.bitCount(occupancy) > MAX_PIECES) throw new IllegalArgumentException("Bad encoded position");
+        byte[] pieces = new byte[MAX_PIECES / 2];
+        buffer.get(pieces);
+
+        var board = new ChessBoard();
+        int i = 0;
+        for (long squares = occupancy; squares != 0; squares &= squares - 1, i++) {
+            int code = i % 2 == 0 ? (pieces[i / 2] >> 4) & 0xF : pieces[i / 2] & 0xF;
+            if (code >= 12) throw new IllegalArgumentException("Bad piece code in encoded position: " + code);
+            var color = code < 6 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            board.addPiece(ChessPosition.of(Long.numberOfTrailingZeros(squares)), new ChessPiece(color, TYPES[code % 6]));
+        }
+
+        int sideAndCastling = buffer.get();
+        int doublePushFile = buffer.get();
+        int halfmoveClock = buffer.get() & 0xFF;
+        int fullmoveNumber = buffer.getShort() & 0xFFFF;
+        buffer.position(buffer.position() + 3);
+        if (doublePushFile < 0 || doublePushFile > 8) throw new IllegalArgumentException("Bad encoded position");
+
+        var game = new ChessGame(board);
+        game.setTeamTurn((sideAndCastling & BLACK_TO_MOVE) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        game.setCastlingRights(sideAndCastling & 0xF);
+        game.setEnPassantFile(doublePushFile);
+        game.setMoveCounters(halfmoveClock, fullmoveNumber);
+        return game;
+    }
+}
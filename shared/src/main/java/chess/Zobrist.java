@@ -0,0 +1,62 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of chess positions. A position's key is the XOR of the keys
+ * of everything in it, so a change to the position is applied by XOR-ing the affected keys in or out.
+ * The keys come from a fixed seed, so they are the same in every JVM.
+ */
+final class Zobrist {
+
+    // Castling right bits
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 2;
+    static final int BLACK_KINGSIDE = 4;
+    static final int BLACK_QUEENSIDE = 8;
+
+    private static final long[][] PIECE_SQUARE = new long[12][Bitboards.SQUARES];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        var random = new SplittableRandom(0x5EED_C4E55L);
+        for (long[] squares : PIECE_SQUARE) {
+            for (int square = 0; square < squares.length; square++) {
+                squares[square] = random.nextLong();
+            }
+        }
+        // Each combination of rights gets the XOR of its individual right keys
+        long[] rightKeys = {random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()};
+        for (int rights = 0; rights < CASTLING.length; rights++) {
+            for (int right = 0; right < rightKeys.length; right++) {
+                if ((rights & (1 << right)) != 0) CASTLING[rights] ^= rightKeys[right];
+            }
+        }
+        for (int file = 0; file < EN_PASSANT_FILE.length; file++) {
+            EN_PASSANT_FILE[file] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    static long piece(ChessPiece piece, int square) {
+        return PIECE_SQUARE[Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType())][square];
+    }
+
+    static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    // file is 1-indexed like ChessPosition columns
+    static long enPassantFile(int file) {
+        return EN_PASSANT_FILE[file - 1];
+    }
+
+    static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+}
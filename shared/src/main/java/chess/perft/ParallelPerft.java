@@ -0,0 +1,87 @@
+package chess.perft;
+
+import chess.ChessGame;
+import chess.ChessMove;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Perft spread over a {@link ForkJoinPool}. The top plies of the move tree are split into tasks,
+ * each searching its own copy of the game, so no game is ever shared between threads.
+ */
+public class ParallelPerft {
+
+    // Plies split into tasks; two gives about 400 tasks from the starting position, enough to keep 32 cores busy
+    public static final int DEFAULT_SPLIT_PLIES = 2;
+
+    /**
+     * @param nodes         leaf node count
+     * @param nodesByThread leaf nodes counted by each worker thread, by thread name
+     * @param nanos         wall-clock time of the search
+     */
+    public record Result(long nodes, Map<String, Long> nodesByThread, long nanos) {
+    }
+
+    /**
+     * Counts the leaf nodes reachable from the game's position in exactly depth moves
+     *
+     * @param game       game in the position to search; it is not modified
+     * @param depth      number of moves (plies) to look ahead
+     * @param splitPlies number of plies from the root to split into separate tasks
+     * @param pool       pool to run the tasks in
+     * @return node count with a breakdown by thread
+     */
+    public static Result perft(ChessGame game, int depth, int splitPlies, ForkJoinPool pool) {
+        var nodesByThread = new ConcurrentHashMap<String, LongAdder>();
+        long start = System.nanoTime();
+        long nodes = pool.invoke(new PerftTask(new ChessGame(game), depth, splitPlies, nodesByThread));
+        long nanos = System.nanoTime() - start;
+
+        var counts = new TreeMap<String, Long>();
+        nodesByThread.forEach((thread, count) -> counts.put(thread, count.sum()));
+        return new Result(nodes, counts, nanos);
+    }
+
+    private static class PerftTask extends RecursiveTask<Long> {
+        private final ChessGame game;
+        private final int depth;
+        private final int splitPlies;
+        private final ConcurrentHashMap<String, LongAdder> nodesByThread;
+
+        PerftTask(ChessGame game, int depth, int splitPlies, ConcurrentHashMap<String, LongAdder> nodesByThread) {
+            this.game = game;
+            this.depth = depth;
+            this.splitPlies = splitPlies;
+            this.nodesByThread = nodesByThread;
+        }
+
+        @Override
+        protected Long compute() {
+            // small enough to search on this thread
+            if (splitPlies <= 0 || depth <= 1) {
+                long nodes = Perft.perft(game, depth);
+                nodesByThread.computeIfAbsent(Thread.currentThread().getName(), name -> new LongAdder()).add(nodes);
+                return nodes;
+            }
+
+            // one subtask per move, each on its own copy of the game
+            var subtasks = new ArrayList<PerftTask>();
+            for (ChessMove move : game.allValidMoves(game.getTeamTurn())) {
+                var child = new ChessGame(game);
+                child.applyMove(move);
+                subtasks.add(new PerftTask(child, depth - 1, splitPlies - 1, nodesByThread));
+            }
+            long nodes = 0;
+            for (var subtask : invokeAll(subtasks)) {
+                nodes += subtask.join();
+            }
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package chess.perft;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.MagicBitboards;
+import chess.PackedMove;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Performance test (perft) for move generation: counts the leaf nodes of the legal move tree
+ * to a fixed depth. The counts for well-known positions are published, so they prove the move
+ * generator correct, and the time taken measures its throughput.
+ * <p>
+ * Usage: {@code Perft <depth> [fen] [--divide] [--threads <n>] [--scaling]}
+ */
+public class Perft {
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /**
+     * Counts the leaf nodes reachable from the game's position in exactly depth moves
+     *
+     * @param game  game in the position to search; it is restored before returning
+     * @param depth number of moves (plies) to look ahead
+     * @return number of leaf nodes
+     */
+    public static long perft(ChessGame game, int depth) {
+        return perft(game, depth, new int[Math.max(depth, 1)][PackedMove.MAX_MOVES]);
+    }
+
+    // Search with one reusable move buffer per remaining ply, so counting allocates no moves
+    private static long perft(ChessGame game, int depth, int[][] buffers) {
+        if (depth == 0) return 1;
+        int[] moves = buffers[depth - 1];
+        int count = game.generateValidMoves(game.getTeamTurn(), moves);
+        if (depth == 1) return count; // bulk count the last ply
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            var undo = game.applyMove(PackedMove.toChessMove(moves[i]));
+            nodes += perft(game, depth - 1, buffers);
+            game.unmakeMove(undo);
+        }
+        return nodes;
+    }
+
+    /**
+     * Splits the perft count by root move, for comparing against another move generator
+     *
+     * @param game  game in the position to search; it is restored before returning
+     * @param depth number of moves (plies) to look ahead, at least 1
+     * @return leaf node count below each legal root move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        var counts = new LinkedHashMap<ChessMove, Long>();
+        for (ChessMove move : game.allValidMoves(game.getTeamTurn())) {
+            var undo = game.applyMove(move);
+            counts.put(move, perft(game, depth - 1));
+            game.unmakeMove(undo);
+        }
+        return counts;
+    }
+
+    /**
+     * @return move in coordinate notation, e.g. "e2e4" or "e7e8q"
+     */
+    public static String moveToString(ChessMove move) {
+        var notation = move.getStartPosition().toString() + move.getEndPosition();
+        if (move.getPromotionPiece() != null) {
+            notation += switch (move.getPromotionPiece()) {
+                case QUEEN -> "q";
+                case ROOK -> "r";
+                case BISHOP -> "b";
+                case KNIGHT -> "n";
+                default -> "";
+            };
+        }
+        return notation;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Perft <depth> [fen] [--divide] [--threads <n>] [--scaling]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        boolean divide = false;
+        boolean scaling = false;
+        int threads = 1;
+        var fen = new StringBuilder();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--divide" -> divide = true;
+                case "--scaling" -> scaling = true;
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                default -> fen.append(args[i]).append(' '); // FEN fields may arrive as separate arguments
+            }
+        }
+        var game = ChessGame.fromFen(fen.isEmpty() ? START_FEN : fen.toString());
+        System.out.printf("slider attack tables built in %.1f ms%n", MagicBitboards.initNanos() / 1e6);
+
+        if (divide) {
+            long start = System.nanoTime();
+            long total = 0;
+            for (var entry : divide(game, depth).entrySet()) {
+                System.out.printf("%s: %d%n", moveToString(entry.getKey()), entry.getValue());
+                total += entry.getValue();
+            }
+            printResult(depth, total, System.nanoTime() - start);
+            return;
+        }
+
+        if (threads > 1) {
+            runParallel(game, depth, threads, scaling);
+            return;
+        }
+
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long nodes = perft(game, d);
+            printResult(d, nodes, System.nanoTime() - start);
+        }
+    }
+
+    // Search on a pool of the given size, reporting each thread's share and optionally the speedup over one thread
+    private static void runParallel(ChessGame game, int depth, int threads, boolean scaling) {
+        var pool = new ForkJoinPool(threads);
+        try {
+            if (scaling && depth > 1) perft(game, depth - 1); // warm up the JIT so neither timed run pays for it
+            var result = ParallelPerft.perft(game, depth, ParallelPerft.DEFAULT_SPLIT_PLIES, pool);
+            printResult(depth, result.nodes(), result.nanos());
+            result.nodesByThread().forEach((thread, nodes) ->
+                    System.out.printf("  %s: %d nodes (%.1f%%)%n", thread, nodes, 100.0 * nodes / result.nodes()));
+
+            if (scaling) {
+                long start = System.nanoTime();
+                perft(game, depth);
+                long serialNanos = System.nanoTime() - start;
+                double speedup = (double) serialNanos / result.nanos();
+                System.out.printf("1 thread: %.3f s, speedup %.2fx on %d threads, efficiency %.0f%%%n",
+                        serialNanos / 1e9, speedup, threads, 100 * speedup / threads);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void printResult(int depth, long nodes, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("depth %d: %d nodes in %.3f s (%.0f nodes/s)%n",
+                depth, nodes, seconds, seconds > 0 ? nodes / seconds : 0);
+    }
+}
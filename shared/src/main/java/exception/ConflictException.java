@@ -0,0 +1,11 @@
+package exception;
+
+
+/**
+ * Indicates the data was changed by someone else after it was read, so the update was not made
+ */
+public class ConflictException extends DataAccessException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -2,5 +2,13 @@ package model;
 
 import chess.ChessGame;
 
-public record GameData(Integer gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game) {
+/**
+ * @param version number of times the stored game has been updated, used to detect concurrent updates
+ */
+public record GameData(Integer gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game,
+                       int version) {
+    
+    public GameData(Integer gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game) {
+        this(gameID, whiteUsername, blackUsername, gameName, game, 0);
+    }
 }
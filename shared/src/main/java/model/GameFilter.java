@@ -0,0 +1,28 @@
+package model;
+
+/**
+ * Which games to include when listing games
+ *
+ * @param openSeats only games with a player seat still free
+ * @param player    only games this user plays in, or null for any
+ * @param status    only games in this state, or null for any
+ */
+public record GameFilter(boolean openSeats, String player, Status status) {
+    
+    public static final GameFilter ALL = new GameFilter(false, null, null);
+    
+    public enum Status {
+        IN_PROGRESS,
+        FINISHED
+    }
+    
+    public boolean matches(GameSummary game) {
+        if (openSeats && game.whiteUsername() != null && game.blackUsername() != null) {
+            return false;
+        }
+        if (player != null && !player.equals(game.whiteUsername()) && !player.equals(game.blackUsername())) {
+            return false;
+        }
+        return status == null || (status == Status.FINISHED) == game.finished();
+    }
+}
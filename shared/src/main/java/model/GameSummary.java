@@ -0,0 +1,10 @@
+package model;
+
+/**
+ * The parts of a game shown in the lobby, without the board
+ *
+ * @param finished whether the game has a winner or ended in a draw
+ */
+public record GameSummary(Integer gameID, String whiteUsername, String blackUsername, String gameName,
+                          boolean finished) {
+}
@@ -1,4 +1,15 @@
 package model.request;
 
-public record ListGamesRequest(String authToken) {
+import model.GameFilter;
+
+/**
+ * @param after  list games with IDs after this one, or null to start from the first game
+ * @param limit  most games to list, or null for the default page size
+ * @param filter which games to include
+ */
+public record ListGamesRequest(String authToken, Integer after, Integer limit, GameFilter filter) {
+    
+    public ListGamesRequest(String authToken) {
+        this(authToken, null, null, GameFilter.ALL);
+    }
 }
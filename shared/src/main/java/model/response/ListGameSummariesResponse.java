@@ -0,0 +1,12 @@
+package model.response;
+
+import model.GameSummary;
+
+import java.util.Collection;
+
+/**
+ * @param games     one page of games, in ID order
+ * @param nextAfter value of "after" that gets the next page, or null if this is the last page
+ */
+public record ListGameSummariesResponse(Collection<GameSummary> games, Integer nextAfter) {
+}
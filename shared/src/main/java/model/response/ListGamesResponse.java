@@ -1,8 +0,0 @@
-package model.response;
-
-import model.GameData;
-
-import java.util.Collection;
-
-public record ListGamesResponse(Collection<GameData> games) {
-}
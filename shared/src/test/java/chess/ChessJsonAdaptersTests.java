@@ -0,0 +1,41 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ChessJsonAdaptersTests {
+    
+    private final Gson gson = ChessJsonAdapters.register(new GsonBuilder()).create();
+    
+    @Test
+    @DisplayName("Same JSON As Default Gson")
+    public void sameJsonAsDefault() {
+        var defaultGson = new Gson();
+        var move = new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.QUEEN);
+        var plainMove = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        Assertions.assertEquals(defaultGson.toJson(move), gson.toJson(move));
+        Assertions.assertEquals(defaultGson.toJson(plainMove), gson.toJson(plainMove));
+    }
+    
+    @Test
+    @DisplayName("Reads Shared Instances")
+    public void readsSharedInstances() {
+        var json = new Gson().toJson(new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.KNIGHT));
+        var move = gson.fromJson(json, ChessMove.class);
+        Assertions.assertSame(ChessMove.of(ChessPosition.of(7, 2), ChessPosition.of(8, 1), ChessPiece.PieceType.KNIGHT), move);
+        Assertions.assertSame(ChessPosition.of(8, 1), move.getEndPosition());
+    }
+    
+    @Test
+    @DisplayName("Game Round Trip")
+    public void gameRoundTrip() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        var copy = gson.fromJson(new Gson().toJson(game), ChessGame.class);
+        Assertions.assertEquals(game, copy);
+        Assertions.assertEquals(game.getZobristKey(), copy.getZobristKey());
+    }
+}
@@ -0,0 +1,64 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+
+public class GameCodecTests {
+    
+    @Test
+    @DisplayName("Round Trip Mid Game")
+    public void roundTripMidGame() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.makeMove(ChessMove.of(ChessPosition.of(7, 1), ChessPosition.of(6, 1), null));
+        game.makeMove(ChessMove.of(ChessPosition.of(4, 5), ChessPosition.of(5, 5), null));
+        game.makeMove(ChessMove.of(ChessPosition.of(7, 4), ChessPosition.of(5, 4), null));
+        
+        byte[] bytes = GameCodec.encode(game);
+        Assertions.assertEquals(GameCodec.BYTES, bytes.length);
+        var decoded = GameCodec.decode(bytes);
+        Assertions.assertEquals(game, decoded);
+        Assertions.assertEquals(game.toFen(), decoded.toFen());
+        
+        // the decoded game can still capture en passant
+        Assertions.assertEquals(new HashSet<>(game.allValidMoves(ChessGame.TeamColor.WHITE)),
+                new HashSet<>(decoded.allValidMoves(ChessGame.TeamColor.WHITE)));
+        Assertions.assertTrue(decoded.validMoves(ChessPosition.of(5, 5))
+                .contains(ChessMove.of(ChessPosition.of(5, 5), ChessPosition.of(6, 4), null)));
+    }
+    
+    @Test
+    @DisplayName("Round Trip Winner And Last Move")
+    public void roundTripWinnerAndLastMove() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(ChessMove.of(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null));
+        game.setWinner(ChessGame.TeamColor.BLACK);
+        
+        var decoded = GameCodec.decode(GameCodec.encode(game));
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, decoded.getWinner());
+        Assertions.assertEquals(game.getLastMove(), decoded.getLastMove());
+        Assertions.assertNull(GameCodec.decode(GameCodec.encode(new ChessGame())).getLastMove());
+    }
+    
+    @Test
+    @DisplayName("Smaller Than JSON")
+    public void smallerThanJson() {
+        var json = new Gson().toJson(new ChessGame()).getBytes(StandardCharsets.UTF_8);
+        Assertions.assertFalse(GameCodec.isEncoded(json));
+        Assertions.assertTrue(GameCodec.encode(new ChessGame()).length * 10 < json.length);
+    }
+    
+    @Test
+    @DisplayName("Unknown Version")
+    public void unknownVersion() {
+        byte[] bytes = GameCodec.encode(new ChessGame());
+        bytes[0] = GameCodec.VERSION + 1;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(bytes));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(new byte[0]));
+    }
+}
@@ -0,0 +1,42 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+public class MagicBitboardsTests {
+    
+    @Test
+    @DisplayName("Lookups Match Ray Walker")
+    public void lookupsMatchRayWalker() {
+        var random = new SplittableRandom(42);
+        for (int square = 0; square < Bitboards.SQUARES; square++) {
+            for (int i = 0; i < 2000; i++) {
+                // boards from nearly empty to nearly full
+                long occupancy = switch (i % 3) {
+                    case 0 -> random.nextLong() & random.nextLong() & random.nextLong();
+                    case 1 -> random.nextLong();
+                    default -> random.nextLong() | random.nextLong();
+                };
+                Assertions.assertEquals(Bitboards.slidingAttacks(square, occupancy, Bitboards.ROOK_DIRECTIONS),
+                        MagicBitboards.rookAttacks(square, occupancy), "Wrong rook attacks from square " + square);
+                Assertions.assertEquals(Bitboards.slidingAttacks(square, occupancy, Bitboards.BISHOP_DIRECTIONS),
+                        MagicBitboards.bishopAttacks(square, occupancy), "Wrong bishop attacks from square " + square);
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Empty And Full Boards")
+    public void emptyAndFullBoards() {
+        for (int square = 0; square < Bitboards.SQUARES; square++) {
+            Assertions.assertEquals(Bitboards.slidingAttacks(square, 0, Bitboards.ROOK_DIRECTIONS),
+                    MagicBitboards.rookAttacks(square, 0));
+            Assertions.assertEquals(Bitboards.kingAttacks(square) & ~Bitboards.knightAttacks(square)
+                            & Bitboards.slidingAttacks(square, 0, Bitboards.BISHOP_DIRECTIONS),
+                    MagicBitboards.bishopAttacks(square, -1L));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MoveListCacheTests {
+    
+    @Test
+    @DisplayName("Board Edits Refresh Valid Moves")
+    public void boardEditsRefreshValidMoves() {
+        var game = new ChessGame();
+        var knight = ChessPosition.of(1, 2);
+        Assertions.assertEquals(2, game.validMoves(knight).size());
+        
+        // block one of the knight's squares behind the game's back
+        game.getBoard().addPiece(ChessPosition.of(3, 3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        Assertions.assertEquals(1, game.validMoves(knight).size(), "Valid moves were served from a stale position");
+    }
+    
+    @Test
+    @DisplayName("Moves Refresh Valid Moves")
+    public void movesRefreshValidMoves() throws InvalidMoveException {
+        var game = new ChessGame();
+        Assertions.assertEquals(20, game.allValidMoves(ChessGame.TeamColor.WHITE).size());
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        Assertions.assertEquals(30, game.allValidMoves(ChessGame.TeamColor.WHITE).size());
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(ChessMove.of(ChessPosition.of(4, 5), ChessPosition.of(5, 5), null)),
+                "Move out of turn was accepted");
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(ChessMove.of(ChessPosition.of(7, 5), ChessPosition.of(4, 5), null)),
+                "Invalid move was accepted");
+    }
+}
@@ -0,0 +1,46 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class PositionCodecTests {
+    
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+            "r3k2r/8/8/8/8/8/8/R3K2R b Kq - 12 40",
+            "8/8/8/8/8/8/8/8 w - - 0 1",
+    })
+    @DisplayName("Encode Round Trip")
+    public void encodeRoundTrip(String fen) {
+        var game = ChessGame.fromFen(fen);
+        byte[] bytes = PositionCodec.encode(game);
+        Assertions.assertEquals(PositionCodec.BYTES, bytes.length);
+        
+        var decoded = PositionCodec.decode(bytes);
+        Assertions.assertEquals(fen, decoded.toFen());
+        Assertions.assertEquals(game, decoded);
+        Assertions.assertEquals(game.getZobristKey(), decoded.getZobristKey());
+    }
+    
+    @Test
+    @DisplayName("Too Many Pieces")
+    public void tooManyPieces() {
+        var board = new ChessBoard();
+        for (int square = 0; square < 33; square++) {
+            board.addPiece(ChessPosition.of(square), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PositionCodec.encode(new ChessGame(board)));
+    }
+    
+    @Test
+    @DisplayName("Wrong Length")
+    public void wrongLength() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(new byte[31]));
+    }
+}
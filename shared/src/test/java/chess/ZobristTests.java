@@ -0,0 +1,145 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ZobristTests {
+    
+    @Test
+    @DisplayName("Incremental Key Matches Recompute")
+    public void incrementalKeyMatchesRecompute() throws InvalidMoveException {
+        // White can take en passant on e6 and capture-promote on a8, and both sides can still castle
+        var game = ChessGame.fromFen("r3k2r/1Ppp1ppp/8/3Pp3/8/8/P1P2PPP/R3K2R w KQkq e6 0 1");
+        Assertions.assertEquals(recompute(game), game.getZobristKey());
+        
+        ChessMove[] moves = {
+                move("d5", "e6", null),                         // en passant
+                move("e8", "g8", null),                         // castling kingside
+                move("b7", "a8", ChessPiece.PieceType.QUEEN),   // capture and promotion
+                move("f8", "a8", null),                         // capture
+                move("e1", "c1", null),                         // castling queenside
+                move("d7", "d5", null),                         // double push
+        };
+        var keysBefore = new ArrayDeque<Long>();
+        for (var move : moves) {
+            keysBefore.push(game.getZobristKey());
+            game.makeMove(move);
+            Assertions.assertEquals(recompute(game), game.getZobristKey(), "Key is stale after " + move);
+        }
+        
+        while (!keysBefore.isEmpty()) {
+            game.unmakeMove();
+            Assertions.assertEquals(recompute(game), game.getZobristKey(), "Key is stale after unmaking a move");
+            Assertions.assertEquals(keysBefore.pop(), game.getZobristKey(), "Unmaking a move didn't restore the key");
+        }
+    }
+    
+    @Test
+    @DisplayName("Transpositions Have Equal Keys")
+    public void transpositionsHaveEqualKeys() throws InvalidMoveException {
+        var knightsFirst = play(move("g1", "f3", null), move("g8", "f6", null),
+                move("b1", "c3", null), move("b8", "c6", null));
+        var knightsSecond = play(move("b1", "c3", null), move("b8", "c6", null),
+                move("g1", "f3", null), move("g8", "f6", null));
+        Assertions.assertEquals(knightsFirst.getZobristKey(), knightsSecond.getZobristKey());
+        Assertions.assertEquals(knightsFirst, knightsSecond);
+        
+        // Pawns reaching e4 and e5 in two steps, against one step and a knight move there and back
+        var pawnsInTwoSteps = play(move("e2", "e3", null), move("e7", "e6", null),
+                move("e3", "e4", null), move("e6", "e5", null));
+        var pawnsInOneStep = play(move("e2", "e4", null), move("e7", "e5", null),
+                move("g1", "f3", null), move("g8", "f6", null),
+                move("f3", "g1", null), move("f6", "g8", null));
+        Assertions.assertEquals(pawnsInTwoSteps.getZobristKey(), pawnsInOneStep.getZobristKey());
+    }
+    
+    @Test
+    @DisplayName("Side To Move Changes Key")
+    public void sideToMoveChangesKey() {
+        Assertions.assertNotEquals(
+                ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1").getZobristKey(),
+                ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 1").getZobristKey());
+    }
+    
+    @Test
+    @DisplayName("Castling Rights Change Key")
+    public void castlingRightsChangeKey() {
+        Set<Long> keys = new HashSet<>();
+        for (int rights = 0; rights < 16; rights++) {
+            var letters = new StringBuilder();
+            for (int i = 0; i < 4; i++) {
+                if ((rights & 1 << i) != 0) letters.append("KQkq".charAt(i));
+            }
+            var fen = "r3k2r/8/8/8/8/8/8/R3K2R w " + (letters.isEmpty() ? "-" : letters) + " - 0 1";
+            keys.add(ChessGame.fromFen(fen).getZobristKey());
+        }
+        Assertions.assertEquals(16, keys.size(), "Different castling rights gave the same key");
+    }
+    
+    @Test
+    @DisplayName("En Passant File Changes Key")
+    public void enPassantFileChangesKey() {
+        // White's e5 pawn could take either black pawn en passant, depending on which just moved
+        long none = ChessGame.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq - 0 3").getZobristKey();
+        long dFile = ChessGame.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3").getZobristKey();
+        long fFile = ChessGame.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3").getZobristKey();
+        Assertions.assertEquals(3, Set.of(none, dFile, fFile).size(), "En passant file didn't change the key");
+    }
+    
+    // The key built from nothing: every piece on the board, then the side, rights and en passant square of the FEN
+    private static long recompute(ChessGame game) {
+        long key = 0;
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                var piece = game.getBoard().getPiece(ChessPosition.of(row, col));
+                if (piece != null) key ^= Zobrist.piece(piece, Bitboards.squareOf(row, col));
+            }
+        }
+        
+        var fields = game.toFen().split(" ");
+        boolean blackToMove = fields[1].equals("b");
+        if (blackToMove) key ^= Zobrist.blackToMove();
+        
+        int rights = 0;
+        for (int i = 0; i < 4; i++) {
+            if (fields[2].indexOf("KQkq".charAt(i)) >= 0) rights |= 1 << i;
+        }
+        key ^= Zobrist.castling(rights);
+        
+        // The en passant file only counts when a pawn of the side to move stands beside the pawn that moved
+        if (!fields[3].equals("-")) {
+            int file = fields[3].charAt(0) - 'a' + 1;
+            int row = blackToMove ? 4 : 5;
+            var capturer = new ChessPiece(blackToMove ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE,
+                    ChessPiece.PieceType.PAWN);
+            for (int col : new int[]{file - 1, file + 1}) {
+                if (col >= 1 && col <= 8 && capturer.equals(game.getBoard().getPiece(ChessPosition.of(row, col)))) {
+                    key ^= Zobrist.enPassantFile(file);
+                    break;
+                }
+            }
+        }
+        return key;
+    }
+    
+    private static ChessGame play(ChessMove... moves) throws InvalidMoveException {
+        var game = new ChessGame();
+        for (var move : moves) {
+            game.makeMove(move);
+        }
+        return game;
+    }
+    
+    private static ChessMove move(String from, String to, ChessPiece.PieceType promotion) {
+        return ChessMove.of(position(from), position(to), promotion);
+    }
+    
+    private static ChessPosition position(String square) {
+        return ChessPosition.of(square.charAt(1) - '0', square.charAt(0) - 'a' + 1);
+    }
+}
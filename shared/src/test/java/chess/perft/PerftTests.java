@@ -0,0 +1,68 @@
+package chess.perft;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Leaf node counts for standard perft positions (see the Chess Programming Wiki "Perft Results" page)
+ */
+public class PerftTests {
+    
+    @ParameterizedTest(name = "{0} depth {2}")
+    @CsvSource({
+            // name, fen, depth, nodes
+            "Start, rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1, 4, 197281",
+            "Kiwipete, r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1, 3, 97862",
+            "Rook endgame, 8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1, 5, 674624",
+            "Promotions and castling, r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1, 3, 9467",
+            "Mirrored promotions and castling, r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1, 3, 9467",
+            "Discovered checks, rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8, 3, 62379",
+            "Underpromotions, n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1, 4, 182838",
+    })
+    public void perftCounts(String name, String fen, int depth, long nodes) {
+        var game = ChessGame.fromFen(fen);
+        Assertions.assertEquals(nodes, Perft.perft(game, depth), "Wrong perft count for " + name);
+    }
+    
+    @Test
+    @DisplayName("En Passant From FEN")
+    public void enPassantFromFen() {
+        // e.p. captures on d6 are only available because of the en passant field
+        var withEnPassant = ChessGame.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3");
+        var withoutEnPassant = ChessGame.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq - 0 3");
+        Assertions.assertEquals(Perft.perft(withoutEnPassant, 1) + 1, Perft.perft(withEnPassant, 1),
+                "En passant square from FEN did not allow exactly one extra capture");
+    }
+    
+    @Test
+    @DisplayName("Divide Sums To Perft")
+    public void divideMatchesPerft() {
+        var game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        long total = Perft.divide(game, 2).values().stream().mapToLong(Long::longValue).sum();
+        Assertions.assertEquals(48, Perft.divide(game, 2).size(), "Wrong number of root moves");
+        Assertions.assertEquals(2039, total, "Divide counts do not add up to the perft count");
+    }
+    
+    @Test
+    @DisplayName("Parallel Perft Matches Serial")
+    public void parallelMatchesSerial() {
+        var game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        var pool = new ForkJoinPool(4);
+        try {
+            var result = ParallelPerft.perft(game, 3, ParallelPerft.DEFAULT_SPLIT_PLIES, pool);
+            Assertions.assertEquals(97862, result.nodes(), "Wrong parallel perft count");
+            long threadTotal = result.nodesByThread().values().stream().mapToLong(Long::longValue).sum();
+            Assertions.assertEquals(result.nodes(), threadTotal, "Per-thread counts do not add up to the total");
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"),
+                game, "Parallel perft changed the searched game");
+    }
+}